@@ -0,0 +1,250 @@
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ *	Evaluates one compiled expression over many rows of variable values.
+ *	Instead of running the whole program once per row, each instruction is
+ *	applied to a block of rows at a time, so every operator becomes a tight
+ *	loop over double[] columns that the JIT can unroll and vectorize.
+ *	Variables given a column take their value from that column in each row;
+ *	every other variable is read from the SymbolTable once per call to
+ *	evaluate (or once by hold, for a batch split into pieces) and used for
+ *	all of its rows. Assignments are not stored: the result of each row is
+ *	returned.
+ *
+ *	An evaluator holds only scratch columns, so it may be reused but not
+ *	shared between threads.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class BatchEvaluator {
+
+	/** rows evaluated together; a block of scratch columns stays in cache */
+	public static final int BLOCK = 1024;
+
+	private double[][] registers;	// value stack, one column per entry
+	private double[] snapshot;		// values of variables without a column, by slot
+
+	public BatchEvaluator() {
+		registers = new double[0][];
+		snapshot = new double[0];
+	}
+
+	/**
+	 *	Evaluate a program for every row
+	 *	@param program		the compiled expression
+	 *	@param variables	the variable database it was compiled against
+	 *	@param columns		values for some variables, one array entry per row
+	 *	@param rows			the number of rows
+	 *	@return				the value of the expression for each row
+	 */
+	public double[] evaluate(CompiledExpression program, SymbolTable variables,
+			Map<String, double[]> columns, int rows) {
+		double[] out = new double[rows];
+		evaluate(program, variables, bind(variables, columns, rows), out, 0, rows);
+		return out;
+	}
+
+	/**
+	 *	Turn named columns into an array indexed by variable slot
+	 *	@param variables	the variable database
+	 *	@param columns		values for some variables, one array entry per row
+	 *	@param rows			the number of rows every column must hold
+	 *	@return				columns by slot (null where a variable has no column)
+	 *	@throws IllegalArgumentException if a column is too short or not a variable
+	 */
+	public static double[][] bind(SymbolTable variables, Map<String, double[]> columns,
+			int rows) {
+		double[][] bySlot = new double[variables.size()][];
+		for (Map.Entry<String, double[]> entry : columns.entrySet()) {
+			int slot = variables.find(entry.getKey());
+			if (slot < 0 || slot >= bySlot.length)
+				continue;	// not used by any compiled expression
+			if (entry.getValue().length < rows)
+				throw new IllegalArgumentException("column " + entry.getKey()
+					+ " has fewer than " + rows + " rows");
+			if (variables.isReadOnly(slot))
+				throw new IllegalArgumentException(entry.getKey() + " is a constant");
+			bySlot[slot] = entry.getValue();
+		}
+		return bySlot;
+	}
+
+	/**
+	 *	Evaluate a program for rows from (inclusive) to to (exclusive)
+	 *	@param program		the compiled expression
+	 *	@param variables	the variable database it was compiled against
+	 *	@param bySlot		columns indexed by variable slot, from bind
+	 *	@param out			where to write the results, indexed by row
+	 *	@param from			the first row
+	 *	@param to			one past the last row
+	 */
+	public void evaluate(CompiledExpression program, SymbolTable variables,
+			double[][] bySlot, double[] out, int from, int to) {
+		if (snapshot.length < variables.size())
+			snapshot = new double[variables.size()];
+		evaluate(program, hold(program, variables, bySlot, snapshot), bySlot, out, from, to);
+	}
+
+	/**
+	 *	Read the current value of every variable the program uses that has
+	 *	no column, so that all rows of a batch see the same values
+	 *	@param program		the compiled expression
+	 *	@param variables	the variable database it was compiled against
+	 *	@param bySlot		columns indexed by variable slot, from bind
+	 *	@param held			where to store the values, at least
+	 *						variables.size() long
+	 *	@return				held
+	 */
+	public static double[] hold(CompiledExpression program, SymbolTable variables,
+			double[][] bySlot, double[] held) {
+		for (int slot : program.inputs())
+			if (slot >= bySlot.length || bySlot[slot] == null)
+				held[slot] = variables.get(slot);
+		return held;
+	}
+
+	/**
+	 *	Evaluate a program for rows from (inclusive) to to (exclusive), with
+	 *	variable values already read by hold
+	 *	@param program		the compiled expression
+	 *	@param held			values of the variables without a column, from hold
+	 *	@param bySlot		columns indexed by variable slot, from bind
+	 *	@param out			where to write the results, indexed by row
+	 *	@param from			the first row
+	 *	@param to			one past the last row
+	 */
+	public void evaluate(CompiledExpression program, double[] held, double[][] bySlot,
+			double[] out, int from, int to) {
+		ensureRegisters(program.getMaxStack());
+		for (int start = from; start < to; start += BLOCK)
+			evaluateBlock(program, held, bySlot, out, start, Math.min(BLOCK, to - start));
+	}
+
+	/**
+	 *	Run the program once over a block of at most BLOCK rows
+	 */
+	private void evaluateBlock(CompiledExpression program, double[] held, double[][] bySlot,
+			double[] out, int row, int n) {
+		int[] code = program.code();
+		double[] constants = program.constants();
+		double[][] r = registers;
+		int sp = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			switch (code[pc++]) {
+				case CompiledExpression.CONST: {
+					Arrays.fill(r[sp++], 0, n, constants[code[pc++]]);
+					break;
+				}
+				case CompiledExpression.LOAD: {
+					int slot = code[pc++];
+					double[] column = slot < bySlot.length ? bySlot[slot] : null;
+					if (column != null)
+						System.arraycopy(column, row, r[sp++], 0, n);
+					else
+						Arrays.fill(r[sp++], 0, n, held[slot]);
+					break;
+				}
+				case CompiledExpression.NEG: {
+					double[] a = r[sp - 1];
+					for (int i = 0; i < n; i++) a[i] = -a[i];
+					break;
+				}
+				case CompiledExpression.ADD: {
+					double[] a = r[sp - 2], b = r[--sp];
+					for (int i = 0; i < n; i++) a[i] = a[i] + b[i];
+					break;
+				}
+				case CompiledExpression.SUB: {
+					double[] a = r[sp - 2], b = r[--sp];
+					for (int i = 0; i < n; i++) a[i] = a[i] - b[i];
+					break;
+				}
+				case CompiledExpression.MUL: {
+					double[] a = r[sp - 2], b = r[--sp];
+					for (int i = 0; i < n; i++) a[i] = a[i] * b[i];
+					break;
+				}
+				case CompiledExpression.DIV: {
+					double[] a = r[sp - 2], b = r[--sp];
+					for (int i = 0; i < n; i++) a[i] = a[i] / b[i];
+					break;
+				}
+				case CompiledExpression.MOD: {
+					double[] a = r[sp - 2], b = r[--sp];
+					for (int i = 0; i < n; i++) a[i] = a[i] % b[i];
+					break;
+				}
+				case CompiledExpression.POW: {
+					double[] a = r[sp - 2], b = r[--sp];
+					for (int i = 0; i < n; i++) a[i] = Math.pow(a[i], b[i]);
+					break;
+				}
+				case CompiledExpression.DUP: {
+					System.arraycopy(r[sp - 1], 0, r[sp++], 0, n);
+					break;
+				}
+				case CompiledExpression.KEEP: {
+					System.arraycopy(r[sp - 1], 0, r[code[pc++]], 0, n);
+					break;
+				}
+				case CompiledExpression.REG: {
+					System.arraycopy(r[code[pc++]], 0, r[sp++], 0, n);
+					break;
+				}
+				case CompiledExpression.CALL: {
+					int f = code[pc++];
+					if (MathFunctions.arity(f) == 1)
+						call(f, r[sp - 1], n);
+					else {
+						double[] a = r[sp - 2], b = r[--sp];
+						for (int i = 0; i < n; i++) a[i] = MathFunctions.apply(f, a[i], b[i]);
+					}
+					break;
+				}
+				case CompiledExpression.MEMO:	// memos are for single evaluations
+					pc += 2;
+					break;
+				case CompiledExpression.SAVE:
+					pc++;
+					break;
+				default:
+					throw new IllegalStateException("bad opcode " + code[pc - 1]);
+			}
+		}
+		System.arraycopy(r[0], 0, out, row, n);
+	}
+
+	/**
+	 *	Apply a one-argument function to a column. The common ones get their
+	 *	own loop, so the JIT can use the intrinsic (or vector) form directly.
+	 */
+	private static void call(int f, double[] a, int n) {
+		switch (f) {
+			case MathFunctions.SQRT:
+				for (int i = 0; i < n; i++) a[i] = Math.sqrt(a[i]);
+				break;
+			case MathFunctions.ABS:
+				for (int i = 0; i < n; i++) a[i] = Math.abs(a[i]);
+				break;
+			case MathFunctions.EXP:
+				for (int i = 0; i < n; i++) a[i] = Math.exp(a[i]);
+				break;
+			case MathFunctions.LN:
+				for (int i = 0; i < n; i++) a[i] = Math.log(a[i]);
+				break;
+			default:
+				for (int i = 0; i < n; i++) a[i] = MathFunctions.apply(f, a[i]);
+		}
+	}
+
+	private void ensureRegisters(int count) {
+		if (registers.length >= count) return;
+		double[][] bigger = new double[count][];
+		for (int i = 0; i < count; i++)
+			bigger[i] = i < registers.length ? registers[i] : new double[BLOCK];
+		registers = bigger;
+	}
+}
@@ -0,0 +1,347 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *	Runs expressions non-interactively: reads one expression per line and
+ *	writes one result per line, in the same order, with no prompts. Input
+ *	and output go through large buffers and are only flushed at the end, and
+ *	numbers are written with DoubleFormat, so millions of lines can be piped
+ *	through quickly.
+ *	o A result is written as a plain number; assignments are stored as usual
+ *		(as formulas in reactive mode) and write the assigned value.
+ *	o A blank line writes a blank line.
+ *	o A bad expression writes "error: " and the message, and the run goes on.
+ *
+ *	With more than one thread the work is pipelined: this thread reads lines
+ *	in chunks, a pool of workers tokenizes and compiles the chunks in
+ *	parallel, one thread evaluates them in input order (so assignments take
+ *	effect exactly as in a sequential run) and another formats and writes
+ *	the results. The stages are connected by bounded queues, so a slow stage
+ *	makes the ones before it wait instead of piling up chunks in memory.
+ *	Compiling is most of the work per line, so that is the stage that runs
+ *	in parallel; evaluating a compiled program is cheap and stays ordered.
+ *
+ *	Usage:	java SimpleCalc --batch [input|-] [output|-] [threads]
+ *	where - (or leaving the name out) means stdin or stdout, and threads
+ *	defaults to the number of processors.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class BatchRunner {
+
+	/** bytes (or chars) buffered on each side */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	/** lines handed between pipeline stages at a time */
+	public static final int CHUNK_SIZE = 512;
+
+	private final SimpleCalc calc;
+	private final int threads;		// compile workers; 1 = no pipeline
+	private final char[] number;	// scratch for DoubleFormat
+	private long lines, errors;
+
+	/** @param calc		the calculator to evaluate with (its variables are used) */
+	public BatchRunner(SimpleCalc calc) {
+		this(calc, 1);
+	}
+
+	/**
+	 *	@param calc		the calculator to evaluate with (its variables are used)
+	 *	@param threads	how many threads compile lines; 1 runs everything on
+	 *					the calling thread
+	 */
+	public BatchRunner(SimpleCalc calc, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+		this.calc = calc;
+		this.threads = threads;
+		number = new char[DoubleFormat.MAX_LENGTH];
+	}
+
+	/**
+	 *	Evaluate every line of a file or stdin
+	 *	@param input	the input file name, or null or "-" for stdin
+	 *	@param output	the output file name, or null or "-" for stdout
+	 */
+	public void run(String input, String output) throws IOException {
+		InputStream in = input == null || input.equals("-") ? System.in
+			: new FileInputStream(input);
+		OutputStream out = output == null || output.equals("-") ? System.out
+			: new FileOutputStream(output);
+		try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+				Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+			run(reader, writer);
+		}
+	}
+
+	/**
+	 *	Evaluate every line of reader, writing the results to writer
+	 *	@param reader	expressions, one per line
+	 *	@param writer	where the results go; flushed but not closed
+	 */
+	public void run(Reader reader, Writer writer) throws IOException {
+		BufferedReader in = new BufferedReader(reader, BUFFER_SIZE);
+		BufferedWriter out = new BufferedWriter(writer, BUFFER_SIZE);
+		if (threads > 1) {
+			pipeline(in, out);
+			return;
+		}
+		EvalContext ctx = calc.getContexts().acquire();
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines++;
+				if (!line.isBlank()) {
+					try {
+						double answer = calc.evaluate(calc.compile(line), ctx);
+						out.write(number, 0, DoubleFormat.format(answer, number, 0));
+					}
+					catch (IllegalArgumentException e) {
+						errors++;
+						out.write("error: ");
+						out.write(String.valueOf(e.getMessage()));
+					}
+				}
+				out.newLine();
+			}
+			out.flush();
+		}
+		finally {
+			calc.getContexts().release(ctx);
+		}
+	}
+
+	/**
+	 *	A run of input lines and, as the stages get to them, their programs,
+	 *	results and error messages
+	 */
+	private static final class Chunk {
+		final String[] lines = new String[CHUNK_SIZE];
+		final CompiledExpression[] programs = new CompiledExpression[CHUNK_SIZE];
+		final double[] results = new double[CHUNK_SIZE];
+		final String[] errors = new String[CHUNK_SIZE];	// null if the line worked
+		final CountDownLatch compiled = new CountDownLatch(1);
+		int count;
+	}
+
+	private static final Chunk END = new Chunk();	// no more chunks
+
+	private volatile Throwable failure;	// first unexpected failure of any stage
+
+	/**
+	 *	Run the stages described above. If a stage fails, the stages after
+	 *	it keep taking chunks (and dropping them) until END, so no stage is
+	 *	left blocked on a full queue.
+	 */
+	private void pipeline(BufferedReader in, BufferedWriter out) throws IOException {
+		int depth = threads * 2 + 2;	// chunks in flight between two stages
+		BlockingQueue<Chunk> toEvaluate = new ArrayBlockingQueue<Chunk>(depth);
+		BlockingQueue<Chunk> toWrite = new ArrayBlockingQueue<Chunk>(depth);
+		ExecutorService compilers = Executors.newFixedThreadPool(threads);
+		Thread evaluator = new Thread(() -> evaluateChunks(toEvaluate, toWrite),
+			"calc-evaluate");
+		Thread writer = new Thread(() -> writeChunks(toWrite, out), "calc-write");
+		evaluator.start();
+		writer.start();
+		try {
+			Chunk chunk = new Chunk();
+			String line;
+			while (failure == null && (line = in.readLine()) != null) {
+				lines++;
+				chunk.lines[chunk.count++] = line;
+				if (chunk.count == CHUNK_SIZE) {
+					submit(chunk, toEvaluate, compilers);
+					chunk = new Chunk();
+				}
+			}
+			if (chunk.count > 0)
+				submit(chunk, toEvaluate, compilers);
+		}
+		catch (IOException | RuntimeException e) {
+			fail(e);
+		}
+		finally {
+			putUninterruptibly(toEvaluate, END);
+			joinUninterruptibly(evaluator);
+			joinUninterruptibly(writer);
+			compilers.shutdown();
+		}
+		if (failure instanceof IOException) throw (IOException)failure;
+		if (failure instanceof RuntimeException) throw (RuntimeException)failure;
+		if (failure != null) throw new IllegalStateException(failure);
+	}
+
+	/** queue a chunk for evaluation in order, and compile it on any worker */
+	private void submit(Chunk chunk, BlockingQueue<Chunk> toEvaluate,
+			ExecutorService compilers) {
+		putUninterruptibly(toEvaluate, chunk);	// waits while too many are in flight
+		compilers.execute(() -> compileChunk(chunk));
+	}
+
+	private void compileChunk(Chunk chunk) {
+		try {
+			for (int i = 0; i < chunk.count && failure == null; i++) {
+				if (chunk.lines[i].isBlank()) continue;
+				try {
+					chunk.programs[i] = calc.compile(chunk.lines[i]);
+				}
+				catch (IllegalArgumentException e) {
+					chunk.errors[i] = String.valueOf(e.getMessage());
+				}
+			}
+		}
+		catch (RuntimeException | Error e) {
+			fail(e);
+		}
+		finally {
+			chunk.compiled.countDown();
+		}
+	}
+
+	private void evaluateChunks(BlockingQueue<Chunk> toEvaluate,
+			BlockingQueue<Chunk> toWrite) {
+		EvalContext ctx = calc.getContexts().acquire();
+		try {
+			Chunk chunk;
+			while ((chunk = takeUninterruptibly(toEvaluate)) != END) {
+				awaitUninterruptibly(chunk.compiled);
+				if (failure != null) continue;
+				try {
+					for (int i = 0; i < chunk.count; i++) {
+						if (chunk.programs[i] == null) continue;
+						try {
+							chunk.results[i] = calc.evaluate(chunk.programs[i], ctx);
+						}
+						catch (IllegalArgumentException e) {
+							chunk.errors[i] = String.valueOf(e.getMessage());
+						}
+					}
+					putUninterruptibly(toWrite, chunk);
+				}
+				catch (RuntimeException | Error e) {
+					fail(e);
+				}
+			}
+		}
+		finally {
+			calc.getContexts().release(ctx);
+			putUninterruptibly(toWrite, END);
+		}
+	}
+
+	private void writeChunks(BlockingQueue<Chunk> toWrite, BufferedWriter out) {
+		Chunk chunk;
+		while ((chunk = takeUninterruptibly(toWrite)) != END) {
+			if (failure != null) continue;
+			try {
+				for (int i = 0; i < chunk.count; i++) {
+					if (chunk.errors[i] != null) {
+						errors++;
+						out.write("error: ");
+						out.write(chunk.errors[i]);
+					}
+					else if (chunk.programs[i] != null)
+						out.write(number, 0, DoubleFormat.format(chunk.results[i], number, 0));
+					out.newLine();
+				}
+			}
+			catch (IOException | RuntimeException | Error e) {
+				fail(e);
+			}
+		}
+		try {
+			out.flush();
+		}
+		catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private synchronized void fail(Throwable e) {
+		if (failure == null) failure = e;
+	}
+
+	// the pipeline threads are never interrupted by this class; if someone
+	// else interrupts one, finish the step and keep the interrupt flag set
+
+	private static <T> void putUninterruptibly(BlockingQueue<T> queue, T item) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(item);
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return queue.take();
+				}
+				catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private static void joinUninterruptibly(Thread thread) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				thread.join();
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/** @return		the number of lines read so far */
+	public long getLines() { return lines; }
+
+	/** @return		the number of lines that failed so far */
+	public long getErrors() { return errors; }
+}
@@ -0,0 +1,299 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *	Turns a CompiledExpression into a class implementing GeneratedExpression.
+ *	The class file is written by hand (there are only a handful of
+ *	instructions to emit) and defined as a hidden class, which is not
+ *	strongly tied to its class loader: once nothing references the
+ *	generated object, for instance after its expression is evicted from the
+ *	cache, the class can be unloaded.
+ *
+ *	Each RPN instruction maps to one or two JVM instructions:
+ *		CONST		ldc2_w (or dconst_0/dconst_1)
+ *		LOAD slot	variables.get(slot), or values[slot]
+ *		NEG ...		dneg, dadd, dsub, dmul, ddiv, drem
+ *		POW			Math.pow
+ *		DUP			dup2
+ *		KEEP r		dup2, dstore (registers are locals after the argument)
+ *		REG r		dload
+ *		CALL f		the static method for function f, e.g. Math.sqrt
+ *	Java arithmetic is exactly the interpreter's, so results are identical.
+ *	Memo instructions are left out. There are no branches, so the methods
+ *	need no stack map frames.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class BytecodeGenerator {
+
+	private static final int MAX_CODE = 65535;	// JVM limit on a method's code
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> entries = new HashMap<String, Integer>();
+	private int poolCount = 1;		// entry 0 is unused
+
+	private BytecodeGenerator() {}
+
+	/**
+	 *	@param program		a compiled expression
+	 *	@return				the same expression as a loaded class instance
+	 *	@throws IllegalStateException if the program is too big for one
+	 *					method or the class can't be defined
+	 */
+	public static GeneratedExpression generate(CompiledExpression program) {
+		try {
+			byte[] bytes = new BytecodeGenerator().classFile(program);
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			return (GeneratedExpression)lookup.findConstructor(lookup.lookupClass(),
+				MethodType.methodType(void.class)).invoke();
+		}
+		catch (RuntimeException | Error e) {
+			throw e;
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("could not generate " + program, e);
+		}
+	}
+
+	/** @return		the class file for program */
+	private byte[] classFile(CompiledExpression program) throws IOException {
+		int thisClass = classRef("CalcGenerated");
+		int superClass = classRef("java/lang/Object");
+		int iface = classRef("GeneratedExpression");
+		int code = utf8("Code");
+		byte[] init = new byte[] {
+			0x2a,								// aload_0
+			(byte)0xb7, 0, 0,					// invokespecial Object.<init>
+			(byte)0xb1							// return
+		};
+		putShort(init, 2, methodRef("java/lang/Object", "<init>", "()V"));
+		byte[] fromTable = body(program, true);
+		byte[] fromArray = body(program, false);
+		int maxStack = program.getMaxStack() * 2 + 2;
+		int maxLocals = 2 + program.getRegisterCount() * 2;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		// methods first, so all their constants are in the pool
+		ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+		DataOutputStream methods = new DataOutputStream(methodBytes);
+		method(methods, 0x0001, utf8("<init>"), utf8("()V"), code, 1, 1, init);
+		method(methods, 0x0001, utf8("evaluate"), utf8("(LSymbolTable;)D"), code,
+			maxStack, maxLocals, fromTable);
+		method(methods, 0x0001, utf8("evaluate"), utf8("([D)D"), code, maxStack, maxLocals,
+			fromArray);
+
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);			// minor version
+		out.writeShort(61);			// Java 17
+		out.writeShort(poolCount);
+		poolBytes.writeTo(out);
+		out.writeShort(0x0001 | 0x0010 | 0x1000 | 0x0020);	// public final synthetic super
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);			// interfaces
+		out.writeShort(iface);
+		out.writeShort(0);			// fields
+		out.writeShort(3);			// methods
+		methodBytes.writeTo(out);
+		out.writeShort(0);			// attributes
+		return bytes.toByteArray();
+	}
+
+	/**
+	 *	@param fromTable	true to read variables from a SymbolTable argument,
+	 *						false from a double[] argument
+	 *	@return				the code of an evaluate method
+	 */
+	private byte[] body(CompiledExpression program, boolean fromTable) throws IOException {
+		int[] code = program.code();
+		double[] constants = program.constants();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.length * 4);
+		DataOutputStream out = new DataOutputStream(bytes);
+		int get = fromTable ? methodRef("SymbolTable", "get", "(I)D") : 0;
+		int registerBase = program.getMaxStack() - program.getRegisterCount();
+		int pc = 0;
+		while (pc < code.length) {
+			int op = code[pc];
+			switch (op) {
+				case CompiledExpression.CONST: {
+					double value = constants[code[pc + 1]];
+					if (Double.doubleToRawLongBits(value) == 0L)
+						out.writeByte(0x0e);				// dconst_0
+					else if (value == 1.0)
+						out.writeByte(0x0f);				// dconst_1
+					else {
+						out.writeByte(0x14);				// ldc2_w
+						out.writeShort(doubleConstant(value));
+					}
+					break;
+				}
+				case CompiledExpression.LOAD:
+					out.writeByte(0x2b);					// aload_1
+					pushInt(out, code[pc + 1]);
+					if (fromTable) {
+						out.writeByte(0xb6);				// invokevirtual
+						out.writeShort(get);
+					}
+					else
+						out.writeByte(0x31);				// daload
+					break;
+				case CompiledExpression.NEG: out.writeByte(0x77); break;	// dneg
+				case CompiledExpression.ADD: out.writeByte(0x63); break;	// dadd
+				case CompiledExpression.SUB: out.writeByte(0x67); break;	// dsub
+				case CompiledExpression.MUL: out.writeByte(0x6b); break;	// dmul
+				case CompiledExpression.DIV: out.writeByte(0x6f); break;	// ddiv
+				case CompiledExpression.MOD: out.writeByte(0x73); break;	// drem
+				case CompiledExpression.POW:
+					out.writeByte(0xb8);					// invokestatic
+					out.writeShort(methodRef("java/lang/Math", "pow", "(DD)D"));
+					break;
+				case CompiledExpression.DUP: out.writeByte(0x5c); break;	// dup2
+				case CompiledExpression.KEEP:
+					out.writeByte(0x5c);					// dup2
+					local(out, 0x39, 2 + (code[pc + 1] - registerBase) * 2);	// dstore
+					break;
+				case CompiledExpression.REG:
+					local(out, 0x18, 2 + (code[pc + 1] - registerBase) * 2);	// dload
+					break;
+				case CompiledExpression.CALL: {
+					int f = code[pc + 1];
+					out.writeByte(0xb8);					// invokestatic
+					out.writeShort(methodRef(MathFunctions.owner(f), MathFunctions.method(f),
+						MathFunctions.arity(f) == 1 ? "(D)D" : "(DD)D"));
+					break;
+				}
+				case CompiledExpression.MEMO:
+				case CompiledExpression.SAVE:
+					break;
+				default:
+					throw new IllegalStateException("bad opcode " + op);
+			}
+			pc += CompiledExpression.length(op);
+		}
+		out.writeByte(0xaf);								// dreturn
+		if (bytes.size() > MAX_CODE)
+			throw new IllegalStateException("expression too long to generate");
+		return bytes.toByteArray();
+	}
+
+	private static void method(DataOutputStream out, int access, int name, int descriptor,
+			int codeName, int maxStack, int maxLocals, byte[] code) throws IOException {
+		out.writeShort(access);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);			// attributes: just Code
+		out.writeShort(codeName);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0);			// exception table
+		out.writeShort(0);			// attributes
+	}
+
+	private void pushInt(DataOutputStream out, int value) throws IOException {
+		if (value <= 5) out.writeByte(0x03 + value);		// iconst_<n>
+		else if (value <= Byte.MAX_VALUE) {
+			out.writeByte(0x10);							// bipush
+			out.writeByte(value);
+		}
+		else if (value <= Short.MAX_VALUE) {
+			out.writeByte(0x11);							// sipush
+			out.writeShort(value);
+		}
+		else {
+			out.writeByte(0x13);							// ldc_w
+			out.writeShort(intConstant(value));
+		}
+	}
+
+	/** emit a load or store of a local, widened past local 255 */
+	private static void local(DataOutputStream out, int op, int index) throws IOException {
+		if (index <= 0xff) {
+			out.writeByte(op);
+			out.writeByte(index);
+		}
+		else {
+			out.writeByte(0xc4);							// wide
+			out.writeByte(op);
+			out.writeShort(index);
+		}
+	}
+
+	// constant pool entries, each added once
+
+	private int utf8(String text) throws IOException {
+		Integer index = entries.get("U" + text);
+		if (index != null) return index;
+		pool.writeByte(1);
+		pool.writeUTF(text);
+		return add("U" + text, 1);
+	}
+
+	private int classRef(String name) throws IOException {
+		Integer index = entries.get("C" + name);
+		if (index != null) return index;
+		int nameIndex = utf8(name);
+		pool.writeByte(7);
+		pool.writeShort(nameIndex);
+		return add("C" + name, 1);
+	}
+
+	private int methodRef(String owner, String name, String descriptor) throws IOException {
+		String key = "M" + owner + "." + name + descriptor;
+		Integer index = entries.get(key);
+		if (index != null) return index;
+		int ownerIndex = classRef(owner);
+		int nameIndex = utf8(name);
+		int descriptorIndex = utf8(descriptor);
+		pool.writeByte(12);			// NameAndType
+		pool.writeShort(nameIndex);
+		pool.writeShort(descriptorIndex);
+		int nameAndType = add(key + "#nt", 1);
+		pool.writeByte(10);			// Methodref
+		pool.writeShort(ownerIndex);
+		pool.writeShort(nameAndType);
+		return add(key, 1);
+	}
+
+	private int doubleConstant(double value) throws IOException {
+		String key = "D" + Double.doubleToRawLongBits(value);
+		Integer index = entries.get(key);
+		if (index != null) return index;
+		pool.writeByte(6);
+		pool.writeDouble(value);
+		return add(key, 2);			// doubles take two entries
+	}
+
+	private int intConstant(int value) throws IOException {
+		String key = "I" + value;
+		Integer index = entries.get(key);
+		if (index != null) return index;
+		pool.writeByte(3);
+		pool.writeInt(value);
+		return add(key, 1);
+	}
+
+	private int add(String key, int size) {
+		if (poolCount + size > 0xFFFF)
+			throw new IllegalStateException("expression too long to generate");
+		int index = poolCount;
+		entries.put(key, index);
+		poolCount += size;
+		return index;
+	}
+
+	private static void putShort(byte[] bytes, int at, int value) {
+		bytes[at] = (byte)(value >>> 8);
+		bytes[at + 1] = (byte)value;
+	}
+}
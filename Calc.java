@@ -0,0 +1,39 @@
+/**
+ *	Static entry points for using the calculator as a library, backed by
+ *	one shared SimpleCalc (with its expression cache, context pool and the
+ *	constants e and pi). Code that needs its own set of shared variables
+ *	can make a SimpleCalc and call its expression method instead.
+ *		Expression e = Calc.compile("a * x ^ 2 + b");
+ *		try (EvalContext ctx = Calc.context()) {
+ *			ctx.set("x", 3);
+ *			double y = e.evaluate(ctx);
+ *		}
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public final class Calc {
+
+	private static final SimpleCalc ENGINE = new SimpleCalc();
+
+	private Calc() {}
+
+	/**
+	 *	@param expression	the arithmetic expression, e.g. "a * x ^ 2 + b"
+	 *	@return				the compiled expression
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	public static Expression compile(String expression) {
+		return ENGINE.expression(expression);
+	}
+
+	/**
+	 *	@return		a context from the shared pool; close it to return it
+	 */
+	public static EvalContext context() {
+		return ENGINE.getContexts().acquire();
+	}
+
+	/** @return		the calculator behind these methods */
+	public static SimpleCalc engine() { return ENGINE; }
+}
@@ -0,0 +1,412 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ *	Micro-benchmarks for the tokenizer, the evaluators and variable lookup.
+ *	Like JMH, each case runs in its own forked JVM so the JIT's profile of
+ *	one case can't slow down another. Each case is warmed up, then run
+ *	repeatedly for a fixed time; the time per operation and the bytes
+ *	allocated per operation (measured with the thread allocation counter,
+ *	like JMH's GC profiler) are printed and written as CSV so runs can be
+ *	compared to catch regressions.
+ *
+ *	Usage:	java CalcBenchmark [output.csv] [name filter]
+ *	The default output file is bench_output.txt. Use -Dbench.warmup=ms and
+ *	-Dbench.time=ms to change how long each case warms up and runs, and
+ *	-Dbench.fork=false to run every case in this JVM.
+ *
+ *	The same cases also run under JMH itself (see jmh/CalcJmh.java), which
+ *	gets each one from lookup:
+ *		mvn -B -P jmh package
+ *		java -jar target/benchmarks.jar -prof gc
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class CalcBenchmark {
+
+	private static volatile double sink;	// keeps results from being optimized away
+
+	private final long warmupNanos;
+	private final long measureNanos;
+	private final String filter;
+	private final boolean exact;			// filter is a single case name
+	private final boolean listOnly;			// just collect the matching cases
+	private final List<String> names;		// cases that matched the filter
+	private final List<String> rows;		// CSV lines
+	private DoubleSupplier found;			// the last case that matched
+
+	public CalcBenchmark(long warmupMillis, long measureMillis, String filter,
+			boolean exact, boolean listOnly) {
+		warmupNanos = warmupMillis * 1_000_000L;
+		measureNanos = measureMillis * 1_000_000L;
+		this.filter = filter;
+		this.exact = exact;
+		this.listOnly = listOnly;
+		names = new ArrayList<String>();
+		rows = new ArrayList<String>();
+		rows.add("benchmark,ns_per_op,bytes_per_op,ops");
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		long warmup = Long.getLong("bench.warmup", 1000);
+		long time = Long.getLong("bench.time", 2000);
+		if (args.length == 2 && args[0].equals("--case")) {	// forked child
+			new CalcBenchmark(warmup, time, args[1], true, false).run();
+			return;
+		}
+		String file = args.length > 0 ? args[0] : "bench_output.txt";
+		String filter = args.length > 1 ? args[1] : "";
+		boolean fork = !"false".equals(System.getProperty("bench.fork"));
+		CalcBenchmark bench = new CalcBenchmark(warmup, time, filter, false, fork);
+		bench.run();
+		if (fork)
+			for (String name : bench.names)
+				bench.fork(name);
+		bench.write(file);
+	}
+
+	/**
+	 *	Set up one case without timing it, for another harness to run
+	 *	@param name		the case's full name, e.g. evaluate.physics.compiled
+	 *	@return			the operation to time
+	 *	@throws IllegalArgumentException if there is no such case
+	 */
+	public static DoubleSupplier lookup(String name) {
+		CalcBenchmark bench = new CalcBenchmark(0, 0, name, true, true);
+		bench.run();
+		if (bench.found == null)
+			throw new IllegalArgumentException("no benchmark " + name);
+		return bench.found;
+	}
+
+	/**
+	 *	Run one case in a new JVM with the same class path and settings and
+	 *	collect its result line
+	 *	@param name		the case to run
+	 */
+	private void fork(String name) throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin"
+			+ File.separator + "java";
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(CalcBenchmark.class.getName());
+		command.add("--case");
+		command.add(name);
+		Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(
+				child.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith(RESULT))
+					rows.add(line.substring(RESULT.length()));
+				else
+					System.out.println(line);
+			}
+		}
+		if (child.waitFor() != 0)
+			System.err.println("benchmark " + name + " failed");
+	}
+
+	private static final String RESULT = "RESULT,";
+
+	/**	Run every benchmark case */
+	public void run() {
+		ExprUtils utils = new ExprUtils();
+		TokenBuffer buffer = new TokenBuffer();
+
+		String shortExpr = "xa = 2.1 + 3 * (5 - 4)";
+		String longExpr = longExpression(2000);
+		bench("tokenize.short.list", () -> utils.tokenizeExpression(shortExpr).size());
+		bench("tokenize.short.buffer", () -> utils.tokenize(shortExpr, buffer));
+		bench("tokenize.long.list", () -> utils.tokenizeExpression(longExpr).size());
+		bench("tokenize.long.buffer", () -> utils.tokenize(longExpr, buffer));
+		numbers();
+
+		evaluate("precedence", "1 + 2 * 3 - 4 / 5 % 6 + 7 * 8 - 9 * 10 / 11 + 12 * 13");
+		evaluate("parentheses", "((1 + 2) * (3 - (4 - 5))) / ((6 + 7) * (8 - (9 + 10)))");
+		evaluate("powchain", "1.0001 ^ 2 ^ 1.5 ^ 1.2 ^ 1.1 ^ 0.9 ^ 1.3");
+		evaluate("variables", variableExpression(50));
+		evaluate("physics", "energy = m * (vx ^ 2 + vy ^ 2) / 2 + m * g * h + k * x ^ 2 / 2"
+			+ " + sqrt(vx ^ 2 + vy ^ 2) * cos(theta) + l ^ 0.5 * max(h, x)");
+		evaluate("shared", "(a + b) * (a + b) / (a + b - c) + sqrt(a * b + c) / (a * b + c)"
+			+ " - (a * b + c) * exp(a + b)");
+
+		Expression poly = Calc.compile("a * x ^ 2 + b * x + c");
+		double[] x = new double[1];
+		bench("api.expression.pooled", () -> {
+			try (EvalContext ctx = Calc.context()) {
+				ctx.set("x", x[0]++);
+				return poly.evaluate(ctx);
+			}
+		});
+
+		stress("tokens.100k", longExpression(12500));
+		stress("tokens.1m", longExpression(125000));
+		stress("nesting.10k", nestedExpression(10000));
+		stress("powchain.100k", powerChain(100000));
+
+		numeric(new DoubleMode());
+		numeric(new FixedPointMode(4));
+		numeric(new DecimalMode(java.math.MathContext.DECIMAL128));
+
+		SimpleCalc calc = new SimpleCalc();
+		bench("compile.cached", () -> calc.compile(shortExpr).getMaxStack());
+		SimpleCalc uncached = new SimpleCalc();
+		uncached.getCache().setCapacity(0);
+		bench("compile.uncached", () -> uncached.compile(shortExpr).getMaxStack());
+
+		SymbolTable symbols = SymbolTable.withConstants();
+		String[] names = new String[5000];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = name(i);
+			symbols.set(names[i], i);
+		}
+		int[] next = new int[1];
+		bench("symbols.find.5000", () -> {
+			int i = next[0]++ % names.length;
+			return symbols.find(names[i]);
+		});
+		bench("symbols.get.5000", () -> symbols.get(next[0]++ % names.length));
+
+		// warm startup: loading a saved environment versus re-running its script
+		StringBuilder script = new StringBuilder();
+		for (int i = 0; i < names.length; i++)
+			script.append(names[i]).append(" = ").append(i).append(" * 1.5\n");
+		String[] lines = script.toString().split("\n");
+		bench("startup.script.5000", () -> {
+			SimpleCalc fresh = new SimpleCalc();
+			for (String line : lines)
+				fresh.evaluate(fresh.compile(line));
+			return fresh.getVariables().size();
+		});
+		try {
+			java.nio.file.Path file = File.createTempFile("calc", ".vars").toPath();
+			file.toFile().deleteOnExit();
+			VariableFile.save(symbols, file);
+			bench("startup.load.5000", () -> {
+				try {
+					return VariableFile.load(file).size();
+				}
+				catch (IOException e) {
+					throw new java.io.UncheckedIOException(e);
+				}
+			});
+		}
+		catch (IOException e) {
+			System.err.println("startup.load.5000 skipped: " + e.getMessage());
+		}
+	}
+
+	/**
+	 *	Benchmark one expression through the token-list evaluator, as a
+	 *	compiled program and as generated bytecode
+	 *	@param name		the benchmark name
+	 *	@param expr		the expression
+	 */
+	private void evaluate(String name, String expr) {
+		SimpleCalc calc = new SimpleCalc();
+		List<String> tokens = new ExprUtils().tokenizeExpression(expr);
+		EvalContext ctx = calc.getContexts().acquire();
+		CompiledExpression program = calc.compile(expr);
+		bench("evaluate." + name + ".tokens", () -> calc.evaluateExpression(ctx, tokens));
+		bench("evaluate." + name + ".compiled", () -> calc.evaluate(program, ctx));
+		SimpleCalc generating = new SimpleCalc();
+		generating.setCodeGeneration(0);
+		CompiledExpression generated = generating.compile(expr);
+		bench("evaluate." + name + ".generated", () -> generating.evaluate(generated, ctx));
+	}
+
+	/**
+	 *	Benchmark a very large expression through the token-list evaluator,
+	 *	the compiler (uncached, including tokenizing) and the compiled
+	 *	program. Comparing sizes shows whether the cost stays linear.
+	 *	@param name		the benchmark name
+	 *	@param expr		the expression
+	 */
+	private void stress(String name, String expr) {
+		SimpleCalc calc = new SimpleCalc();
+		calc.getCache().setCapacity(0);
+		List<String> tokens = new ExprUtils().tokenizeExpression(expr);
+		EvalContext ctx = calc.getContexts().acquire();
+		CompiledExpression program = calc.compile(expr);
+		bench("stress." + name + ".tokens", () -> calc.evaluateExpression(ctx, tokens));
+		bench("stress." + name + ".compile", () -> calc.compile(expr).getMaxStack());
+		bench("stress." + name + ".compiled", () -> calc.evaluate(program, ctx));
+	}
+
+	/**
+	 *	Benchmark parsing literals and formatting results against the JDK's
+	 *	Double.parseDouble and Double.toString, on a mix of short numbers
+	 *	like 1234.56 and full 17-digit ones
+	 */
+	private void numbers() {
+		java.util.Random random = new java.util.Random(23);
+		String[] literals = new String[1024];
+		double[] values = new double[1024];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i % 2 == 0 ? random.nextInt(1_000_000) / 100.0
+				: random.nextDouble() * Math.pow(10, random.nextInt(12) - 4);
+			literals[i] = new java.math.BigDecimal(values[i])
+				.round(new java.math.MathContext(17)).stripTrailingZeros().toPlainString();
+		}
+		char[] text = new char[DoubleFormat.MAX_LENGTH];
+		int[] next = new int[1];
+		bench("number.parse.fast", () -> DoubleParser.parse(literals[next[0]++ & 1023]));
+		bench("number.parse.jdk", () -> Double.parseDouble(literals[next[0]++ & 1023]));
+		bench("number.format.shortest", () -> DoubleFormat.format(values[next[0]++ & 1023], text, 0));
+		bench("number.format.jdk", () -> Double.toString(values[next[0]++ & 1023]).length());
+	}
+
+	/**
+	 *	Benchmark an invoice-style sum in a numeric mode
+	 *	@param mode		the numeric mode
+	 */
+	private <T> void numeric(NumericMode<T> mode) {
+		NumericCalc<T> calc = new NumericCalc<T>(mode);
+		calc.evaluate("price = 19.99");
+		calc.evaluate("qty = 3");
+		calc.evaluate("rate = 0.0825");
+		String expr = "total = price * qty * (1 + rate) - 5.25 / 2 + qty % 2";
+		String name = mode.getName().replaceFirst(":.*", "");
+		bench("numeric." + name, () -> mode.toDouble(calc.evaluate(expr)));
+	}
+
+	/**
+	 *	Measure one case: warm it up, then time batches of calls until the
+	 *	measurement time has passed
+	 *	@param name		the benchmark name
+	 *	@param op		the operation to time
+	 */
+	public void bench(String name, DoubleSupplier op) {
+		if (exact ? !name.equals(filter) : !name.contains(filter)) return;
+		names.add(name);
+		found = op;
+		if (listOnly) return;
+		long batch = 1;
+		long end = System.nanoTime() + warmupNanos;
+		while (System.nanoTime() < end) {
+			double sum = 0;
+			for (long i = 0; i < batch; i++) sum += op.getAsDouble();
+			sink = sum;
+			if (batch < 1 << 20) batch *= 2;
+		}
+
+		long ops = 0;
+		long bytes0 = allocatedBytes();
+		long start = System.nanoTime();
+		long now = start;
+		while (now - start < measureNanos) {
+			double sum = 0;
+			for (long i = 0; i < batch; i++) sum += op.getAsDouble();
+			sink = sum;
+			ops += batch;
+			now = System.nanoTime();
+		}
+		long bytes = allocatedBytes() - bytes0;
+
+		double nsPerOp = (double)(now - start) / ops;
+		double bytesPerOp = bytes < 0 ? Double.NaN : (double)bytes / ops;
+		System.out.printf("%-40s %12.1f ns/op %10.1f B/op%n", name, nsPerOp, bytesPerOp);
+		String row = name + "," + nsPerOp + "," + bytesPerOp + "," + ops;
+		rows.add(row);
+		if (exact)
+			System.out.println(RESULT + row);	// picked up by the parent JVM
+	}
+
+	/**
+	 *	Write the results as CSV
+	 *	@param file		the file name
+	 */
+	public void write(String file) throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+			for (String row : rows)
+				out.println(row);
+		}
+		System.out.println("results written to " + file);
+	}
+
+	/** @return		bytes allocated by this thread so far, or -1 if unsupported */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)bean).getCurrentThreadAllocatedBytes();
+		return -1;
+	}
+
+	/**
+	 *	@param terms	number of terms
+	 *	@return			a long machine-generated style expression
+	 */
+	static String longExpression(int terms) {
+		StringBuilder sb = new StringBuilder("total = ");
+		for (int i = 0; i < terms; i++) {
+			if (i > 0) sb.append(i % 3 == 0 ? " + " : i % 3 == 1 ? " - " : " * ");
+			sb.append('(').append(name(i % 200)).append(" * ").append(i % 97 + 0.25)
+				.append(" + ").append(i).append(')');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 *	@param depth	levels of parentheses
+	 *	@return			x * (1 - x * (1 - ... x ...)), nested depth deep
+	 */
+	static String nestedExpression(int depth) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < depth; i++)
+			sb.append("x * (1 - ");
+		sb.append('x');
+		for (int i = 0; i < depth; i++)
+			sb.append(')');
+		return sb.toString();
+	}
+
+	/**
+	 *	@param length	number of ^ operators
+	 *	@return			x ^ 0.5 ^ x ^ 0.5 ..., evaluated right to left
+	 */
+	static String powerChain(int length) {
+		StringBuilder sb = new StringBuilder("x");
+		for (int i = 0; i < length; i++)
+			sb.append(i % 2 == 0 ? " ^ 0.5" : " ^ x");
+		return sb.toString();
+	}
+
+	/**
+	 *	@param count	number of variables
+	 *	@return			a sum of products of distinct variables
+	 */
+	static String variableExpression(int count) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sb.append(" + ");
+			sb.append(name(i)).append(" * ").append(name(i + count));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 *	@param i	a number
+	 *	@return		a unique letters-only variable name for it
+	 */
+	static String name(int i) {
+		StringBuilder sb = new StringBuilder("v");
+		do {
+			sb.append((char)('a' + i % 26));
+			i /= 26;
+		} while (i > 0);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,754 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ *	Differential and property-based checks of every way SimpleCalc can
+ *	evaluate an expression. Random well-formed expressions are generated as
+ *	trees (nested and redundant parentheses, every operator, signs attached
+ *	to a number or name and signs on their own, variables, constants,
+ *	function calls, ^ chains, repeated sub-terms, and signed literals too
+ *	long for DoubleParser's fast path, some on the halfway point between
+ *	two doubles), printed as text, and
+ *	evaluated directly by a small reference evaluator that knows nothing of
+ *	tokens, precedence or programs. Each engine must give the reference's
+ *	result bit for bit (all NaNs are equal):
+ *		tokens		SimpleCalc.evaluateExpression on the token list
+ *		compiled	the interpreted program from SimpleCalc.compile, with
+ *					constant folding, strength reduction and shared
+ *					sub-expressions
+ *		memoized	programs compiled with memos (and no shared
+ *					sub-expressions), run twice so the second run reuses them
+ *		generated	programs turned into bytecode
+ *		context		Expression.evaluate with values bound in an EvalContext
+ *		batch		SimpleCalc.evaluateBatch
+ *		double		NumericCalc with DoubleMode, compiled exactly
+ *	Two properties are checked as well: every finite result prints with
+ *	DoubleFormat and parses back to itself, and a broken copy of each text
+ *	(a character dropped, doubled or inserted) makes the token evaluator
+ *	and the compiler agree, either on the value or on the error message.
+ *	Last, a few numbers too big for fixed-point must be rejected by
+ *	NumericCalc with an IllegalArgumentException, like any bad expression,
+ *	and a few signed literals that DoubleParser can't parse quickly must
+ *	give Double.parseDouble's value in every engine.
+ *
+ *	A failing expression is shrunk, by replacing parts of its tree with
+ *	their operands for as long as it still fails, before it is printed.
+ *	After the checks every engine is timed over the first expressions of
+ *	the corpus, with the variables held still, and compared with the token
+ *	evaluator. Generated code is a class per expression, each compiled by
+ *	the JIT on its own, so it needs a longer -Dcheck.time to catch up.
+ *
+ *	Usage:	java CalcFuzzer [expressions] [seed] [depth]
+ *	The defaults are 20000 expressions up to depth 6 and a random seed,
+ *	which is printed so a failing run can be repeated. Use -Dcheck.ulps=n
+ *	to accept results within n units in the last place, -Dcheck.timed=n to
+ *	time n expressions (0 to skip timing) and -Dcheck.time=ms for how long
+ *	each engine is timed. The exit status is 1 if any check failed.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class CalcFuzzer {
+
+	private static volatile double sink;	// keeps timed results from being optimized away
+
+	// node kinds
+	private static final int NUM = 0;
+	private static final int VAR = 1;
+	private static final int NEG = 2;		// -operand
+	private static final int POS = 3;		// +number or +name
+	private static final int PAREN = 4;		// redundant parentheses
+	private static final int BINARY = 5;
+	private static final int CALL = 6;
+
+	// precedence when printing; a sign on its own binds between * and ^
+	private static final int ATOM = 5;
+	private static final int SIGN = 3;
+
+	private static final String[] VARIABLES = { "x", "y", "z", "pi", "e" };
+	private static final String[] FUNCTIONS = { "sqrt", "cbrt", "exp", "ln", "log",
+		"sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh", "abs",
+		"floor", "ceil" };
+	private static final String[] FUNCTIONS2 = { "min", "max", "atan2", "hypot" };
+	private static final String OPERATORS = "+-*/%^";
+	/** exponents that the compiler reduces, and some that it doesn't */
+	private static final String[] EXPONENTS = { "2", "0.5", "1", "3", "0", "2.5", ".5" };
+	private static final double[] VALUES = { 0.0, -0.0, 1, -1, 0.5, 2, 3, -2.5, 7.25,
+		1.0 / 3, 1e-300, 1e300, 1e10, -0.1 };
+	private static final String[] ENGINES = { "tokens", "compiled", "memoized",
+		"generated", "context", "batch", "double" };
+	/** signed literals DoubleParser leaves to Double.parseDouble */
+	private static final String[] SLOW_LITERALS = {
+		"-889178645.37563377614361470662384129359147974630",
+		"+889178645.37563377614361470662384129359147974630",
+		"-9007199254740993.0000000000000000000000001",
+		"-0.1000000000000000055511151231257827021181583404541015625",
+		"-1e5", "-2.5E-3", "+7.25e+300", "-Infinity" };
+	/** expressions whose numbers don't fit in fixed:2 */
+	private static final String[] TOO_BIG = { "99999999999999999999 + 1", "1e30",
+		"92233720368547758.07 + 1", "x = -99999999999999999999" };
+
+	/** a node of a generated expression; nodes may be shared */
+	private static final class Node {
+		final int kind;
+		final String text;		// number text, variable or function name
+		final char op;			// binary operator
+		final Node[] args;
+
+		Node(int kind, String text, char op, Node... args) {
+			this.kind = kind;
+			this.text = text;
+			this.op = op;
+			this.args = args;
+		}
+	}
+
+	private final Random random;
+	private final int maxDepth;
+	private final long ulps;
+	private final List<Node> seen = new ArrayList<Node>();	// sub-terms to repeat
+
+	// the engines, all sharing one variable database
+	private final SimpleCalc calc = new SimpleCalc();
+	private final SimpleCalc memoized = new SimpleCalc(calc.getVariables());
+	private final SimpleCalc generating = new SimpleCalc(calc.getVariables());
+	private final NumericCalc<Double> exact = new NumericCalc<Double>(new DoubleMode(), calc);
+	private final ExprUtils utils = new ExprUtils();
+	private final EvalContext context = new EvalContext(calc.getVariables());
+	private final double[] values = new double[3];		// x, y and z
+
+	private int failures;
+	private int shared;			// programs with shared sub-expressions
+	private long saved;			// operations those save
+
+	/**
+	 *	@param seed		the random seed
+	 *	@param maxDepth	how deeply operators nest at most
+	 */
+	public CalcFuzzer(long seed, int maxDepth) {
+		random = new Random(seed);
+		this.maxDepth = maxDepth;
+		ulps = Long.getLong("check.ulps", 0);
+		memoized.setMemoization(true);
+		generating.setCodeGeneration(0);
+	}
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+		int timed = Integer.getInteger("check.timed", 2000);
+		long time = Long.getLong("check.time", 1000);
+		System.out.println("seed " + seed + ", " + count + " expressions up to depth " + depth);
+
+		CalcFuzzer fuzzer = new CalcFuzzer(seed, depth);
+		List<Node> corpus = new ArrayList<Node>();
+		for (int i = 0; i < count; i++) {
+			Node tree = fuzzer.expression();
+			fuzzer.check(tree);
+			if (i < timed) corpus.add(tree);
+		}
+		fuzzer.tooBig();
+		fuzzer.slowLiterals();
+		System.out.printf("%d failures; shared sub-expressions in %d programs save %d operations%n",
+			fuzzer.failures, fuzzer.shared, fuzzer.saved);
+		if (!corpus.isEmpty())
+			fuzzer.time(corpus, time * 1_000_000L);
+		if (fuzzer.failures > 0)
+			System.exit(1);
+	}
+
+	// generating expressions
+
+	/** @return		a new random expression */
+	private Node expression() {
+		seen.clear();
+		return node(1 + random.nextInt(maxDepth));
+	}
+
+	/** @return		a random expression of at most depth nested operators */
+	private Node node(int depth) {
+		if (!seen.isEmpty() && random.nextInt(6) == 0)
+			return seen.get(random.nextInt(seen.size()));	// a repeated sub-term
+		Node node;
+		if (depth == 0 || random.nextInt(6) == 0)
+			node = leaf();
+		else {
+			switch (random.nextInt(12)) {
+				case 0: node = new Node(NEG, null, (char)0, node(depth - 1)); break;
+				case 1: node = new Node(POS, null, (char)0, leaf()); break;
+				case 2: node = new Node(PAREN, null, (char)0, node(depth - 1)); break;
+				case 3:
+					node = new Node(CALL, FUNCTIONS[random.nextInt(FUNCTIONS.length)], (char)0,
+						node(depth - 1));
+					break;
+				case 4:
+					node = new Node(CALL, FUNCTIONS2[random.nextInt(FUNCTIONS2.length)], (char)0,
+						node(depth - 1), node(depth - 1));
+					break;
+				case 5: node = chain(depth); break;
+				default:
+					node = new Node(BINARY, null, OPERATORS.charAt(random.nextInt(OPERATORS.length())),
+						node(depth - 1), node(depth - 1));
+			}
+		}
+		if (node.kind != NUM && node.kind != VAR) seen.add(node);
+		return node;
+	}
+
+	/** @return		a ^ chain like x ^ 2 ^ 0.5, right associative */
+	private Node chain(int depth) {
+		int links = 1 + random.nextInt(3);
+		Node right = exponent(depth);
+		for (int i = 1; i < links; i++)
+			right = new Node(BINARY, null, '^', exponent(depth), right);
+		return new Node(BINARY, null, '^', node(depth - 1), right);
+	}
+
+	private Node exponent(int depth) {
+		int pick = random.nextInt(EXPONENTS.length + 3);
+		if (pick < EXPONENTS.length)
+			return new Node(NUM, EXPONENTS[pick], (char)0);
+		if (pick == EXPONENTS.length)
+			return new Node(NEG, null, (char)0, new Node(NUM, "1", (char)0));
+		return node(Math.min(depth - 1, 1));
+	}
+
+	private Node leaf() {
+		if (random.nextInt(3) == 0)
+			return new Node(VAR, VARIABLES[random.nextInt(VARIABLES.length)], (char)0);
+		String text = number();
+		Node number = new Node(NUM, text, (char)0);
+		if (text.length() > DoubleParser.MAX_DIGITS && random.nextBoolean())	// signed
+			return new Node(random.nextBoolean() ? NEG : POS, null, (char)0, number);
+		return number;
+	}
+
+	/** @return		the text of a random unsigned number */
+	private String number() {
+		switch (random.nextInt(10)) {
+			case 0: return random.nextInt(10) + "." + random.nextInt(1000);
+			case 1: return "." + random.nextInt(100);
+			case 2: return (1 + random.nextInt(99)) + ".";
+			case 3: return halfway();
+			case 4: {	// more digits than a long holds
+				StringBuilder digits = new StringBuilder();
+				int n = 15 + random.nextInt(30);
+				for (int i = 0; i < n; i++)
+					digits.append((char)((i == 0 ? '1' : '0') + random.nextInt(i == 0 ? 9 : 10)));
+				if (random.nextBoolean())
+					digits.insert(random.nextInt(n), '.');
+				return digits.toString();
+			}
+			default: return Integer.toString(random.nextInt(13));
+		}
+	}
+
+	/**
+	 *	@return		the point halfway between two neighbouring doubles, or
+	 *				just off it, written out in full: DoubleParser's fast path
+	 *				can't tell which way that rounds and leaves it to
+	 *				Double.parseDouble
+	 */
+	private String halfway() {
+		double low = (1 + random.nextDouble()) * Math.pow(10, random.nextInt(24) - 8);
+		BigDecimal mid = new BigDecimal(low).add(new BigDecimal(Math.nextUp(low)))
+			.divide(BigDecimal.valueOf(2));
+		BigDecimal off = BigDecimal.ONE.movePointLeft(mid.scale() + 3);
+		switch (random.nextInt(3)) {
+			case 0: return mid.toPlainString();
+			case 1: return mid.add(off).toPlainString();
+			default: return mid.subtract(off).toPlainString();
+		}
+	}
+
+	// printing
+
+	/** @return		expression text that parses back to exactly this tree */
+	private String print(Node tree) {
+		StringBuilder sb = new StringBuilder();
+		if (random.nextInt(10) == 0)
+			sb.append("w = ");
+		print(tree, sb);
+		return sb.toString();
+	}
+
+	private void print(Node node, StringBuilder sb) {
+		switch (node.kind) {
+			case NUM: case VAR:
+				sb.append(node.text);
+				break;
+			case POS:
+				sb.append('+');
+				print(node.args[0], sb);
+				break;
+			case NEG:
+				sb.append('-');
+				if (signs(sb, sb.length() - 1) && !attaches(node.args[0])) {
+					// "-(" so the sign isn't attached to what follows
+					sb.append('(');
+					print(node.args[0], sb);
+					sb.append(')');
+				}
+				else
+					operand(node.args[0], SIGN, false, sb);
+				break;
+			case PAREN:
+				sb.append('(');
+				print(node.args[0], sb);
+				sb.append(')');
+				break;
+			case CALL:
+				sb.append(node.text).append('(');
+				for (int i = 0; i < node.args.length; i++) {
+					if (i > 0) sb.append(',').append(' ');
+					print(node.args[i], sb);
+				}
+				sb.append(')');
+				break;
+			default: {
+				int p = precedence(node.op);
+				boolean power = node.op == '^';
+				Node left = node.args[0], right = node.args[1];
+				operand(left, p, power && left.kind == BINARY && left.op == '^', sb);
+				space(sb);
+				sb.append(node.op);
+				space(sb);
+				// a sign on its own after ^ takes the rest of the chain, as it should
+				if (power && right.kind == NEG)
+					print(right, sb);
+				else
+					operand(right, p, !power && precedence(right, sb) == p, sb);
+			}
+		}
+	}
+
+	/** print an operand, in parentheses if it binds less tightly than p */
+	private void operand(Node node, int p, boolean parens, StringBuilder sb) {
+		if (parens || precedence(node, sb) < p) {
+			sb.append('(');
+			print(node, sb);
+			sb.append(')');
+		}
+		else
+			print(node, sb);
+	}
+
+	/** @return		how tightly node binds when printed after sb */
+	private static int precedence(Node node, StringBuilder sb) {
+		if (node.kind == BINARY)
+			return precedence(node.op);
+		if (node.kind == NEG)
+			return signs(sb, sb.length()) && attaches(node.args[0]) ? ATOM : SIGN;
+		return ATOM;
+	}
+
+	private static int precedence(char op) {
+		return op == '^' ? 4 : op == '+' || op == '-' ? 1 : 2;
+	}
+
+	/** @return		true if a sign before node becomes part of its token */
+	private static boolean attaches(Node node) {
+		return node.kind == NUM || node.kind == VAR || node.kind == CALL;
+	}
+
+	/**
+	 *	@return		true if a sign written at end would be attached to the next
+	 *				number or name (see ExprLexer): at the start, or after =,
+	 *				+ or -
+	 */
+	private static boolean signs(StringBuilder sb, int end) {
+		int i = end - 1;
+		while (i >= 0 && sb.charAt(i) == ' ') i--;
+		return i < 0 || sb.charAt(i) == '=' || sb.charAt(i) == '+' || sb.charAt(i) == '-';
+	}
+
+	/** spaces between tokens are optional */
+	private void space(StringBuilder sb) {
+		if (random.nextInt(3) != 0) sb.append(' ');
+	}
+
+	// the reference evaluator
+
+	/** @return		the value of a tree, computed directly */
+	private double reference(Node node) {
+		switch (node.kind) {
+			case NUM: return Double.parseDouble(node.text);
+			case VAR:
+				switch (node.text) {
+					case "pi": return Math.PI;
+					case "e": return Math.E;
+					default: return values[node.text.charAt(0) - 'x'];
+				}
+			case NEG: return -reference(node.args[0]);
+			case POS: case PAREN: return reference(node.args[0]);
+			case CALL: {
+				double a = reference(node.args[0]);
+				if (node.args.length == 2)
+					return function2(node.text, a, reference(node.args[1]));
+				return function(node.text, a);
+			}
+			default: {
+				double a = reference(node.args[0]), b = reference(node.args[1]);
+				switch (node.op) {
+					case '+': return a + b;
+					case '-': return a - b;
+					case '*': return a * b;
+					case '/': return a / b;
+					case '%': return a % b;
+					default: return Math.pow(a, b);
+				}
+			}
+		}
+	}
+
+	private static double function(String name, double a) {
+		switch (name) {
+			case "sqrt": return Math.sqrt(a);
+			case "cbrt": return Math.cbrt(a);
+			case "exp": return Math.exp(a);
+			case "ln": return Math.log(a);
+			case "log": return Math.log10(a);
+			case "sin": return Math.sin(a);
+			case "cos": return Math.cos(a);
+			case "tan": return Math.tan(a);
+			case "asin": return Math.asin(a);
+			case "acos": return Math.acos(a);
+			case "atan": return Math.atan(a);
+			case "sinh": return Math.sinh(a);
+			case "cosh": return Math.cosh(a);
+			case "tanh": return Math.tanh(a);
+			case "abs": return Math.abs(a);
+			case "floor": return Math.floor(a);
+			default: return Math.ceil(a);
+		}
+	}
+
+	private static double function2(String name, double a, double b) {
+		switch (name) {
+			case "min": return Math.min(a, b);
+			case "max": return Math.max(a, b);
+			case "atan2": return Math.atan2(a, b);
+			default: return Math.hypot(a, b);
+		}
+	}
+
+	// checking
+
+	/** check one tree with random variable values, shrinking it if it fails */
+	private void check(Node tree) {
+		for (int i = 0; i < values.length; i++)
+			values[i] = random.nextInt(4) == 0 ? random.nextGaussian() * 100
+				: random.nextInt(60) == 0 ? Double.NaN
+				: random.nextInt(60) == 0 ? Double.NEGATIVE_INFINITY
+				: VALUES[random.nextInt(VALUES.length)];
+		String text = print(tree);
+		String failure = failure(tree, text, true);
+		if (failure != null) {
+			failures++;
+			if (failures <= 10)
+				report(tree, text, failure);
+		}
+		broken(text);
+	}
+
+	/**
+	 *	Run every engine on text and compare with the reference
+	 *	@param count	true to add the program's sharing to the totals
+	 *	@return			what failed, or null if nothing did
+	 */
+	private String failure(Node tree, String text, boolean count) {
+		bind();
+		double expected = reference(tree);
+		double[] results = new double[ENGINES.length];
+		try {
+			results[0] = calc.evaluateExpression(utils.tokenizeExpression(text));
+			CompiledExpression program = calc.compile(text);
+			if (count && program.getSavedOperations() > 0) {
+				shared++;
+				saved += program.getSavedOperations();
+			}
+			results[1] = calc.evaluate(program);
+			CompiledExpression memo = memoized.compile(text);
+			double first = memoized.evaluate(memo);
+			results[2] = memoized.evaluate(memo);
+			if (!same(first, results[2]))
+				return "memoized: second run " + results[2] + " but first " + first;
+			results[3] = generating.evaluate(generating.compile(text));
+			results[4] = calc.expression(text).evaluate(context);
+			Map<String, double[]> columns = new HashMap<String, double[]>();
+			for (int i = 0; i < 3; i++)
+				columns.put(VARIABLES[i], new double[] { values[i] });
+			results[5] = calc.evaluateBatch(program, columns, 1)[0];
+			results[6] = exact.evaluate(text);
+		}
+		catch (RuntimeException e) {
+			return "threw " + e;
+		}
+		for (int i = 0; i < ENGINES.length; i++)
+			if (!close(expected, results[i]))
+				return ENGINES[i] + " gave " + results[i] + ", expected " + expected;
+		if (Double.isFinite(expected)) {
+			String printed = DoubleFormat.toString(expected);
+			if (!same(Double.parseDouble(printed), expected))
+				return expected + " printed as " + printed;
+		}
+		return null;
+	}
+
+	/**
+	 *	Break text by dropping, doubling or inserting a character; the token
+	 *	evaluator and the compiler must then agree
+	 */
+	private void broken(String text) {
+		StringBuilder sb = new StringBuilder(text);
+		int at = random.nextInt(text.length());
+		switch (random.nextInt(3)) {
+			case 0: sb.deleteCharAt(at); break;
+			case 1: sb.insert(at, text.charAt(at)); break;
+			default: sb.insert(at, "()+-*/^,.=x".charAt(random.nextInt(11)));
+		}
+		String mutant = sb.toString();
+		String tokens, compiled;
+		bind();		// the mutant may assign to x, y or z
+		try {
+			tokens = "= " + calc.evaluateExpression(utils.tokenizeExpression(mutant));
+		}
+		catch (IllegalArgumentException e) {
+			tokens = e.getMessage();
+		}
+		catch (RuntimeException e) {
+			tokens = "threw " + e;
+		}
+		bind();
+		try {
+			compiled = "= " + calc.evaluate(calc.compile(mutant));
+		}
+		catch (IllegalArgumentException e) {
+			compiled = e.getMessage();
+		}
+		catch (RuntimeException e) {
+			compiled = "threw " + e;
+		}
+		if (!tokens.equals(compiled) || tokens.startsWith("threw")) {
+			failures++;
+			if (failures <= 10)
+				System.out.println("FAIL broken \"" + mutant + "\": tokens " + tokens
+					+ " | compiled " + compiled);
+		}
+	}
+
+	/** fixed-point NumericCalc must reject numbers it can't hold as bad input */
+	private void tooBig() {
+		NumericCalc<Long> fixed = new NumericCalc<Long>(new FixedPointMode(2));
+		for (String text : TOO_BIG) {
+			String outcome;
+			try {
+				outcome = "= " + fixed.format(fixed.evaluate(text));
+			}
+			catch (IllegalArgumentException e) {
+				continue;
+			}
+			catch (RuntimeException e) {
+				outcome = "threw " + e;
+			}
+			failures++;
+			System.out.println("FAIL fixed:2 \"" + text + "\": " + outcome);
+		}
+	}
+
+	/** signed literals must keep their sign when DoubleParser falls back */
+	private void slowLiterals() {
+		for (String literal : SLOW_LITERALS) {
+			double expected = Double.parseDouble(literal);
+			String failure = null;
+			try {
+				if (!same(DoubleParser.parse(literal), expected))
+					failure = "DoubleParser gave " + DoubleParser.parse(literal);
+				else if (Character.isDigit(literal.charAt(literal.length() - 1))
+						&& literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+					String text = literal + " + 0";	// expressions have no exponents
+					double[] results = { calc.evaluateExpression(utils.tokenizeExpression(text)),
+						calc.evaluate(calc.compile(text)), exact.evaluate(text) };
+					for (int i = 0; i < results.length && failure == null; i++)
+						if (!same(results[i], expected))
+							failure = new String[] { "tokens", "compiled", "double" }[i]
+								+ " gave " + results[i];
+				}
+			}
+			catch (RuntimeException e) {
+				failure = "threw " + e;
+			}
+			if (failure != null) {
+				failures++;
+				System.out.println("FAIL literal \"" + literal + "\": " + failure
+					+ ", expected " + expected);
+			}
+		}
+	}
+
+	/** give x, y and z their values, shared and in the context */
+	private void bind() {
+		for (int i = 0; i < values.length; i++) {
+			calc.getVariables().set(VARIABLES[i], values[i]);
+			context.set(VARIABLES[i], values[i]);
+		}
+	}
+
+	/** shrink a failing tree as far as it keeps failing, then print it */
+	private void report(Node tree, String text, String failure) {
+		for (int attempts = 0; attempts < 500; attempts++) {
+			Node smaller = null;
+			String smallerText = null, smallerFailure = null;
+			for (Node node : nodes(tree)) {
+				for (Node arg : node.args) {
+					Node candidate = replace(tree, node, arg, new IdentityHashMap<Node, Node>());
+					String candidateText = print(candidate);
+					String f = failure(candidate, candidateText, false);
+					if (f != null) {
+						smaller = candidate;
+						smallerText = candidateText;
+						smallerFailure = f;
+						break;
+					}
+				}
+				if (smaller != null) break;
+			}
+			if (smaller == null) break;
+			tree = smaller;
+			text = smallerText;
+			failure = smallerFailure;
+		}
+		System.out.printf("FAIL \"%s\" with x=%s y=%s z=%s: %s%n", text, values[0], values[1],
+			values[2], failure);
+	}
+
+	/** @return		the distinct nodes of a tree, parents first */
+	private static List<Node> nodes(Node tree) {
+		List<Node> list = new ArrayList<Node>();
+		IdentityHashMap<Node, Boolean> visited = new IdentityHashMap<Node, Boolean>();
+		List<Node> pending = new ArrayList<Node>();
+		pending.add(tree);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			if (visited.put(node, Boolean.TRUE) != null) continue;
+			list.add(node);
+			for (int i = node.args.length - 1; i >= 0; i--)
+				pending.add(node.args[i]);
+		}
+		return list;
+	}
+
+	/** @return		tree with every use of target replaced by with */
+	private static Node replace(Node tree, Node target, Node with, Map<Node, Node> done) {
+		if (tree == target) return with;
+		Node copy = done.get(tree);
+		if (copy != null) return copy;
+		Node[] args = new Node[tree.args.length];
+		boolean changed = false;
+		for (int i = 0; i < args.length; i++) {
+			args[i] = replace(tree.args[i], target, with, done);
+			changed |= args[i] != tree.args[i];
+		}
+		copy = changed ? new Node(tree.kind, tree.text, tree.op, args) : tree;
+		done.put(tree, copy);
+		return copy;
+	}
+
+	private static boolean same(double a, double b) {
+		return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+	}
+
+	/** @return		true if actual is expected, or within check.ulps of it */
+	private boolean close(double expected, double actual) {
+		if (same(expected, actual)) return true;
+		return ulps > 0 && Double.isFinite(expected) && Double.isFinite(actual)
+			&& Math.abs(expected - actual) <= ulps * Math.ulp(expected);
+	}
+
+	// timing
+
+	/** one way of evaluating expression i of the timed corpus */
+	private interface Engine {
+		double run(int i);
+	}
+
+	/** time every engine over the corpus and print the time per evaluation */
+	private void time(List<Node> corpus, long nanos) {
+		int n = corpus.size();
+		String[] texts = new String[n];
+		List<List<String>> tokens = new ArrayList<List<String>>();
+		CompiledExpression[] programs = new CompiledExpression[n];
+		CompiledExpression[] memos = new CompiledExpression[n];
+		CompiledExpression[] generated = new CompiledExpression[n];
+		Expression[] expressions = new Expression[n];
+		for (int i = 0; i < n; i++) {
+			StringBuilder sb = new StringBuilder();
+			print(corpus.get(i), sb);		// no assignments, so the values stay put
+			texts[i] = sb.toString();
+			tokens.add(utils.tokenizeExpression(texts[i]));
+			programs[i] = calc.compile(texts[i]);
+			memos[i] = memoized.compile(texts[i]);
+			generated[i] = generating.compile(texts[i]);
+			expressions[i] = calc.expression(texts[i]);
+		}
+		int rows = 256;
+		Map<String, double[]> columns = new HashMap<String, double[]>();
+		for (int v = 0; v < 3; v++) {
+			double[] column = new double[rows];
+			for (int r = 0; r < rows; r++) column[r] = random.nextGaussian() * 10;
+			columns.put(VARIABLES[v], column);
+		}
+		for (int i = 0; i < values.length; i++)
+			values[i] = 1.5 + i;
+		bind();
+		EvalContext ctx = calc.getContexts().acquire();
+
+		System.out.println("time per evaluation over " + n + " expressions:");
+		double base = time("tokens", n, nanos, 1, i -> calc.evaluateExpression(ctx, tokens.get(i)), 0);
+		time("reference", n, nanos, 1, i -> reference(corpus.get(i)), base);
+		time("compiled", n, nanos, 1, i -> calc.evaluate(programs[i], ctx), base);
+		time("memoized (hits)", n, nanos, 1, i -> memoized.evaluate(memos[i], ctx), base);
+		time("generated", n, nanos, 1, i -> generating.evaluate(generated[i], ctx), base);
+		time("context", n, nanos, 1, i -> expressions[i].evaluate(context), base);
+		time("batch (per row)", n, nanos, rows,
+			i -> calc.evaluateBatch(programs[i], columns, rows)[0], base);
+		time("double", n, nanos, 1, i -> exact.evaluate(texts[i]), base);
+		calc.getContexts().release(ctx);
+	}
+
+	/**
+	 *	Run an engine over the corpus, first to warm up and then for a fixed
+	 *	time, and print the time per evaluation
+	 *	@param per		evaluations per run
+	 *	@param base		the token evaluator's time, to compare with, or 0
+	 *	@return			nanoseconds per evaluation
+	 */
+	private double time(String name, int n, long nanos, int per, Engine engine, double base) {
+		double sum = 0;
+		long end = System.nanoTime() + nanos / 2;
+		while (System.nanoTime() < end)
+			for (int i = 0; i < n; i++) sum += engine.run(i);
+		long runs = 0;
+		long start = System.nanoTime();
+		end = start + nanos;
+		long now;
+		do {
+			for (int i = 0; i < n; i++) sum += engine.run(i);
+			runs += n;
+			now = System.nanoTime();
+		} while (now < end);
+		sink = sum;
+		double ns = (now - start) / (double)runs / per;
+		if (base > 0)
+			System.out.printf("  %-18s %9.1f ns  (%.1fx as fast as tokens)%n", name, ns, base / ns);
+		else
+			System.out.printf("  %-18s %9.1f ns%n", name, ns);
+		return ns;
+	}
+}
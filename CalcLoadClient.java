@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *	Load generator and benchmark for CalcServer. Each connection runs on its
+ *	own thread and sends its requests in windows: a window of lines goes out
+ *	in one write, then the client reads that many responses before sending
+ *	the next window. A request's latency is from its window being sent to
+ *	its response arriving. After a warmup, throughput and latency
+ *	percentiles are printed.
+ *
+ *	Usage:	java CalcLoadClient [address] [connections] [seconds] [window]
+ *	where address is as for CalcServer.address, or "tcp" (the default) or
+ *	"unix" to start a server in this JVM on a loopback port or a temporary
+ *	Unix-domain socket, so the benchmark runs entirely on localhost.
+ *	The defaults are 4 connections, 5 seconds and a window of 32; a window
+ *	of 1 measures plain request-response round trips. Use
+ *	-Dbench.warmup=seconds to change the 2 second warmup.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class CalcLoadClient {
+
+	/** what each connection sends, over and over; x is set per connection */
+	private static final String[] WORKLOAD = { "y = x * 2 + 1", "sqrt(x) + pi",
+		"z = y ^ 2 - 3 * x", "max(y, z) / (x + 1)", "x % 7 + e" };
+
+	private final SocketAddress address;
+	private final int window;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private volatile boolean recording;
+	private volatile boolean running = true;
+
+	/**
+	 *	@param address	the server to load
+	 *	@param window	requests sent before waiting for their responses
+	 */
+	public CalcLoadClient(SocketAddress address, int window) {
+		this.address = address;
+		this.window = window;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String where = args.length > 0 ? args[0] : "tcp";
+		int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		int window = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+		long warmup = Long.getLong("bench.warmup", 2);
+
+		CalcServer server = null;
+		Path socket = null;
+		SocketAddress address;
+		if (where.equals("tcp"))
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		else if (where.equals("unix")) {
+			socket = Files.createTempDirectory("calc").resolve("calc.sock");
+			address = UnixDomainSocketAddress.of(socket);
+		}
+		else
+			address = CalcServer.address(where);
+		if (where.equals("tcp") || where.equals("unix")) {
+			server = new CalcServer(new SimpleCalc(), address).start();
+			address = server.getAddress();
+		}
+
+		try {
+			CalcLoadClient client = new CalcLoadClient(address, window);
+			long[] counts = client.run(connections, warmup * 1000, seconds * 1000L);
+			long total = 0;
+			for (long count : counts) total += count;
+			System.out.println(where + ": " + connections + " connections, window " + window);
+			System.out.printf("  %,.0f requests/s%n", total / (double)seconds);
+			LatencyHistogram h = client.latency;
+			System.out.printf("  latency us: mean %.1f  p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+				h.getMean() / 1e3, h.getPercentile(50) / 1e3, h.getPercentile(99) / 1e3,
+				h.getPercentile(99.9) / 1e3, h.getMax() / 1e3);
+			if (server != null)
+				System.out.printf("  %.1f requests per server batch%n",
+					server.getRequests() / (double)Math.max(1, server.getBatches()));
+		}
+		finally {
+			if (server != null) server.close();
+			if (socket != null) Files.deleteIfExists(socket.getParent());
+		}
+	}
+
+	/**
+	 *	Load the server, then stop every connection
+	 *	@param connections	the number of connections
+	 *	@param warmupMillis	how long to run before recording
+	 *	@param measureMillis	how long to record
+	 *	@return				the requests each connection completed while recording
+	 */
+	public long[] run(int connections, long warmupMillis, long measureMillis)
+			throws IOException, InterruptedException {
+		long[] counts = new long[connections];
+		List<Thread> threads = new ArrayList<Thread>();
+		List<IOException> failures = new ArrayList<IOException>();
+		for (int i = 0; i < connections; i++) {
+			int id = i;
+			SocketChannel channel = SocketChannel.open(address);
+			Thread t = new Thread(() -> {
+				try (SocketChannel c = channel) {
+					load(c, id, counts);
+				}
+				catch (IOException e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			}, "calc-load-" + i);
+			threads.add(t);
+			t.start();
+		}
+		Thread.sleep(warmupMillis);
+		recording = true;
+		Thread.sleep(measureMillis);
+		recording = false;
+		running = false;
+		for (Thread t : threads)
+			t.join();
+		if (!failures.isEmpty()) throw failures.get(0);
+		return counts;
+	}
+
+	/** send windows of requests on one connection until stopped */
+	private void load(SocketChannel channel, int id, long[] counts) throws IOException {
+		ByteBuffer out = ByteBuffer.allocate(64 * window + 64);
+		ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+		send(channel, out, "x = " + (id + 1) + "\n");
+		receive(channel, in, 1);
+
+		int next = 0;
+		long done = 0;
+		while (running) {
+			out.clear();
+			for (int i = 0; i < window; i++) {
+				out.put(WORKLOAD[next].getBytes(StandardCharsets.UTF_8)).put((byte)'\n');
+				next = (next + 1) % WORKLOAD.length;
+			}
+			out.flip();
+			long start = System.nanoTime();
+			while (out.hasRemaining())
+				channel.write(out);
+			receive(channel, in, window);
+			if (recording) {
+				long elapsed = System.nanoTime() - start;
+				for (int i = 0; i < window; i++)
+					latency.record(elapsed);
+				done += window;
+			}
+		}
+		counts[id] = done;
+	}
+
+	private static void send(SocketChannel channel, ByteBuffer out, String text) throws IOException {
+		out.clear();
+		out.put(text.getBytes(StandardCharsets.UTF_8)).flip();
+		while (out.hasRemaining())
+			channel.write(out);
+	}
+
+	/** read until n response lines have arrived; an error response fails the run */
+	private static void receive(SocketChannel channel, ByteBuffer in, int n) throws IOException {
+		int lines = 0;
+		boolean lineStart = true;
+		while (lines < n) {
+			in.clear();
+			if (channel.read(in) < 0)
+				throw new IOException("server closed the connection");
+			in.flip();
+			while (in.hasRemaining()) {
+				byte b = in.get();
+				if (lineStart && b == 'e')
+					throw new IOException("server answered with an error");
+				lineStart = b == '\n';
+				if (lineStart) lines++;
+			}
+		}
+	}
+}
@@ -0,0 +1,176 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *	Process-wide counters and latency histograms for the calculator.
+ *	Metrics are off unless the JVM is started with -Dcalc.metrics=true.
+ *	ENABLED is a static final constant, so when it is false the JIT removes
+ *	every instrumented branch and the hot paths cost nothing extra.
+ *	o evaluations, compiles, compile errors and batch rows are counted with
+ *		LongAdders, which don't contend between threads
+ *	o tokenize, compile and evaluate times go into LatencyHistograms
+ *	o bytes allocated per evaluation are sampled from 1 in SAMPLE
+ *		evaluations, since reading the allocation counter is not free
+ *	Use summary or CalcMonitor (JMX) to read them, or startDump to print
+ *	them periodically.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public final class CalcMetrics {
+
+	/** true if metrics are collected (-Dcalc.metrics=true) */
+	public static final boolean ENABLED = Boolean.getBoolean("calc.metrics");
+
+	/** one in this many evaluations has its allocation measured */
+	public static final int SAMPLE = 1024;
+
+	public static final LatencyHistogram TOKENIZE = new LatencyHistogram();
+	public static final LatencyHistogram COMPILE = new LatencyHistogram();
+	public static final LatencyHistogram EVALUATE = new LatencyHistogram();
+
+	private static final LongAdder evaluations = new LongAdder();
+	private static final LongAdder compiles = new LongAdder();
+	private static final LongAdder errors = new LongAdder();
+	private static final LongAdder batchRows = new LongAdder();
+	private static final LongAdder sampledBytes = new LongAdder();
+	private static final LongAdder samples = new LongAdder();
+
+	private static ScheduledExecutorService dumper;	// made by the first startDump
+
+	private CalcMetrics() {}
+
+	/**
+	 *	Call before an evaluation when ENABLED
+	 *	@return		the thread's allocated bytes if this evaluation is sampled,
+	 *				otherwise -1
+	 */
+	static long allocationMark() {
+		if (ThreadLocalRandom.current().nextInt(SAMPLE) != 0) return -1;
+		return allocatedBytes();
+	}
+
+	/**
+	 *	Record an evaluation
+	 *	@param startNanos	System.nanoTime() before it
+	 *	@param mark			allocationMark() before it
+	 */
+	static void evaluated(long startNanos, long mark) {
+		long end = System.nanoTime();
+		if (mark >= 0) {
+			long bytes = allocatedBytes() - mark;
+			if (bytes >= 0) {
+				sampledBytes.add(bytes);
+				samples.increment();
+			}
+		}
+		evaluations.increment();
+		EVALUATE.record(end - startNanos);
+	}
+
+	/**
+	 *	Record a compile
+	 *	@param startNanos		System.nanoTime() before tokenizing
+	 *	@param tokenizedNanos	System.nanoTime() after tokenizing
+	 */
+	static void compiled(long startNanos, long tokenizedNanos) {
+		compiles.increment();
+		TOKENIZE.record(tokenizedNanos - startNanos);
+		COMPILE.record(System.nanoTime() - tokenizedNanos);
+	}
+
+	/** count an expression that failed to compile */
+	static void failed() { errors.increment(); }
+
+	/** @param rows		rows evaluated by a batch */
+	static void batch(int rows) { batchRows.add(rows); }
+
+	public static long getEvaluations() { return evaluations.sum(); }
+
+	public static long getCompiles() { return compiles.sum(); }
+
+	public static long getErrors() { return errors.sum(); }
+
+	public static long getBatchRows() { return batchRows.sum(); }
+
+	/** @return		average bytes allocated by the sampled evaluations */
+	public static double getBytesPerEvaluation() {
+		long n = samples.sum();
+		return n == 0 ? 0 : (double)sampledBytes.sum() / n;
+	}
+
+	/** reset every counter and histogram */
+	public static void reset() {
+		evaluations.reset();
+		compiles.reset();
+		errors.reset();
+		batchRows.reset();
+		sampledBytes.reset();
+		samples.reset();
+		TOKENIZE.reset();
+		COMPILE.reset();
+		EVALUATE.reset();
+	}
+
+	/**
+	 *	@param calc		a calculator whose cache and variables to include, or null
+	 *	@return			the current metrics, several lines
+	 */
+	public static String summary(SimpleCalc calc) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("evaluations=%d compiles=%d errors=%d batchRows=%d "
+			+ "bytes/eval=%.1f%n", getEvaluations(), getCompiles(), getErrors(),
+			getBatchRows(), getBytesPerEvaluation()));
+		sb.append("tokenize: ").append(TOKENIZE).append('\n');
+		sb.append("compile:  ").append(COMPILE).append('\n');
+		sb.append("evaluate: ").append(EVALUATE).append('\n');
+		if (calc != null) {
+			sb.append(calc.getCache()).append(String.format(", hit rate %.1f%%%n",
+				calc.getCache().getHitRate() * 100));
+			sb.append("variables: ").append(calc.getVariables().size()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 *	Print the summary every period on a daemon thread
+	 *	@param calc			a calculator to include, or null
+	 *	@param periodMillis	time between dumps
+	 *	@param out			where to print
+	 *	@return				cancel this to stop dumping
+	 */
+	public static synchronized ScheduledFuture<?> startDump(SimpleCalc calc, long periodMillis,
+			PrintStream out) {
+		if (dumper == null) {
+			dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "calc-metrics");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return dumper.scheduleAtFixedRate(() -> out.print(summary(calc)), periodMillis,
+			periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 *	Looked up once, since getThreadMXBean itself allocates, and only on
+	 *	first use: starting the management classes takes longer than a
+	 *	whole short run of the calculator
+	 */
+	private static final class Threads {
+		static final java.lang.management.ThreadMXBean BEAN = ManagementFactory.getThreadMXBean();
+	}
+
+	/** @return		bytes allocated by this thread so far, or -1 if unsupported */
+	private static long allocatedBytes() {
+		if (Threads.BEAN instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)Threads.BEAN).getCurrentThreadAllocatedBytes();
+		return -1;
+	}
+}
@@ -0,0 +1,83 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *	Publishes CalcMetrics and one calculator's cache and variable counts as
+ *	a JMX MBean, so they can be watched with jconsole or any JMX client
+ *	under the name "simplecalc:type=Calculator,name=...".
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class CalcMonitor implements CalcMonitorMBean {
+
+	private final SimpleCalc calc;
+
+	/** @param calc		the calculator to report on */
+	public CalcMonitor(SimpleCalc calc) {
+		this.calc = calc;
+	}
+
+	/**
+	 *	Register a monitor for a calculator with the platform MBean server
+	 *	@param calc		the calculator to report on
+	 *	@param name		a name to tell calculators apart, e.g. "main"
+	 *	@return			the MBean's name
+	 *	@throws IllegalStateException if the MBean can't be registered
+	 */
+	public static ObjectName register(SimpleCalc calc, String name) {
+		try {
+			ObjectName objectName = new ObjectName("simplecalc:type=Calculator,name="
+				+ ObjectName.quote(name));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new CalcMonitor(calc),
+				objectName);
+			return objectName;
+		}
+		catch (JMException e) {
+			throw new IllegalStateException("could not register " + name, e);
+		}
+	}
+
+	public boolean isEnabled() { return CalcMetrics.ENABLED; }
+
+	public long getEvaluations() { return CalcMetrics.getEvaluations(); }
+
+	public long getCompiles() { return CalcMetrics.getCompiles(); }
+
+	public long getErrors() { return CalcMetrics.getErrors(); }
+
+	public long getBatchRows() { return CalcMetrics.getBatchRows(); }
+
+	public double getBytesPerEvaluation() { return CalcMetrics.getBytesPerEvaluation(); }
+
+	public double getEvaluateMeanNanos() { return CalcMetrics.EVALUATE.getMean(); }
+
+	public long getEvaluateP50Nanos() { return CalcMetrics.EVALUATE.getPercentile(50); }
+
+	public long getEvaluateP99Nanos() { return CalcMetrics.EVALUATE.getPercentile(99); }
+
+	public long getEvaluateMaxNanos() { return CalcMetrics.EVALUATE.getMax(); }
+
+	public double getTokenizeMeanNanos() { return CalcMetrics.TOKENIZE.getMean(); }
+
+	public long getTokenizeP99Nanos() { return CalcMetrics.TOKENIZE.getPercentile(99); }
+
+	public double getCompileMeanNanos() { return CalcMetrics.COMPILE.getMean(); }
+
+	public long getCompileP99Nanos() { return CalcMetrics.COMPILE.getPercentile(99); }
+
+	public double getCacheHitRate() { return calc.getCache().getHitRate(); }
+
+	public long getCacheHits() { return calc.getCache().getHits(); }
+
+	public long getCacheMisses() { return calc.getCache().getMisses(); }
+
+	public long getCacheEvictions() { return calc.getCache().getEvictions(); }
+
+	public int getCacheSize() { return calc.getCache().size(); }
+
+	public int getVariableCount() { return calc.getVariables().size(); }
+
+	public void reset() { CalcMetrics.reset(); }
+}
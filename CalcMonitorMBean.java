@@ -0,0 +1,50 @@
+/**
+ *	The JMX view of a calculator's metrics; see CalcMonitor.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public interface CalcMonitorMBean {
+
+	boolean isEnabled();
+
+	long getEvaluations();
+
+	long getCompiles();
+
+	long getErrors();
+
+	long getBatchRows();
+
+	double getBytesPerEvaluation();
+
+	double getEvaluateMeanNanos();
+
+	long getEvaluateP50Nanos();
+
+	long getEvaluateP99Nanos();
+
+	long getEvaluateMaxNanos();
+
+	double getTokenizeMeanNanos();
+
+	long getTokenizeP99Nanos();
+
+	double getCompileMeanNanos();
+
+	long getCompileP99Nanos();
+
+	double getCacheHitRate();
+
+	long getCacheHits();
+
+	long getCacheMisses();
+
+	long getCacheEvictions();
+
+	int getCacheSize();
+
+	int getVariableCount();
+
+	void reset();
+}
@@ -0,0 +1,428 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ *	Evaluates expressions for clients over a local socket, so a caller pays
+ *	for one JVM start instead of one per expression. Requests and responses
+ *	are lines of UTF-8 text, exactly as in BatchRunner: each request line
+ *	gets one response line, in order, with the value, "error: " and a
+ *	message, or a blank line for a blank request.
+ *
+ *	Each connection is a session with its own EvalContext: an assignment
+ *	like "x = 3" is seen by that session's later requests and by no other
+ *	session. Variables no session has assigned, like e and pi, come from
+ *	the calculator's shared table. Programs are compiled through the
+ *	calculator's cache, so every session shares the compiled form of an
+ *	expression.
+ *
+ *	One thread runs everything with a non-blocking Selector. Each round it
+ *	reads whatever every ready connection has sent, evaluates all the
+ *	complete lines together as one batch (up to MAX_BATCH), and then writes
+ *	each session's responses with a single write. A client that pipelines
+ *	many small requests, or many clients sending at once, so cost one
+ *	wakeup and one write per round instead of one per request. A session
+ *	whose client stops reading is not read from until its responses drain.
+ *	Each round starts with the session after the last one it got to, so a
+ *	client that always has MAX_BATCH requests waiting can't starve others.
+ *
+ *	Names a request uses are added to the calculator's shared table, which
+ *	every session's context mirrors. Once the table holds MAX_NAMES
+ *	variables, a request using a name it doesn't have yet is answered with
+ *	an error instead, so clients can't grow the server without bound.
+ *
+ *	Usage:	java SimpleCalc --server [port | host:port | unix:path]
+ *	which listens on localhost port 7341 by default.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class CalcServer implements Closeable {
+
+	public static final int DEFAULT_PORT = 7341;
+	public static final int MAX_LINE = 1 << 16;		// longest request, in bytes
+	public static final int MAX_BATCH = 4096;		// requests evaluated per round
+	public static final int MAX_NAMES = 4096;		// variables before new names are refused
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int MAX_PENDING = 1 << 20;	// unsent bytes before a session stops reading
+	private static final String TOO_LONG = new String("");	// queued for an overlong request
+
+	/** one connection and its variables */
+	private static final class Session {
+		final SocketChannel channel;
+		final SelectionKey key;
+		final EvalContext context;
+		final ArrayDeque<String> requests = new ArrayDeque<String>();
+		ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);	// responses not yet sent
+		byte[] line = new byte[256];		// the request being read
+		int lineLength;
+		boolean tooLong;					// the request being read is over MAX_LINE
+		boolean ending;						// the client has sent everything
+
+		Session(SocketChannel channel, SelectionKey key, EvalContext context) {
+			this.channel = channel;
+			this.key = key;
+			this.context = context;
+		}
+
+		/** make room for n more response bytes */
+		void reserve(int n) {
+			if (out.remaining() < n) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + n));
+				out.flip();
+				bigger.put(out);
+				out = bigger;
+			}
+		}
+	}
+
+	private final SimpleCalc calc;
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final SocketAddress address;
+	private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);	// shared read buffer
+	private final char[] number = new char[DoubleFormat.MAX_LENGTH];
+	private final List<Session> ready = new ArrayList<Session>();	// sessions with requests
+	private final List<Session> sessions = new ArrayList<Session>();
+	private int next;				// the session the next round starts with
+	private final ExprLexer lexer = new ExprLexer();
+	private final TokenBuffer tokens = new TokenBuffer();	// for checking names
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile long requests;
+	private volatile long batches;
+
+	/**
+	 *	Listen on a socket; call start to begin serving
+	 *	@param calc		the calculator whose variables and cache to share
+	 *	@param address	an InetSocketAddress (port 0 for any free port) or a
+	 *					UnixDomainSocketAddress
+	 */
+	public CalcServer(SimpleCalc calc, SocketAddress address) throws IOException {
+		this.calc = calc;
+		if (address instanceof UnixDomainSocketAddress)
+			server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		else
+			server = ServerSocketChannel.open();
+		server.bind(address);
+		server.configureBlocking(false);
+		this.address = server.getLocalAddress();
+		selector = Selector.open();
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 *	@param text		"port", "host:port" or "unix:path"; null or empty
+	 *					for localhost DEFAULT_PORT
+	 *	@return			the socket address it names
+	 */
+	public static SocketAddress address(String text) {
+		try {
+			if (text == null || text.isEmpty())
+				return new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+			if (text.startsWith("unix:"))
+				return UnixDomainSocketAddress.of(text.substring(5));
+			int colon = text.lastIndexOf(':');
+			if (colon < 0)
+				return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(text));
+			return new InetSocketAddress(text.substring(0, colon),
+				Integer.parseInt(text.substring(colon + 1)));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad address " + text);
+		}
+	}
+
+	/**
+	 *	Serve on a new thread
+	 *	@return		this server
+	 */
+	public CalcServer start() {
+		thread = new Thread(this::run, "calc-server");
+		thread.start();
+		return this;
+	}
+
+	/** @return		the address listened on, with the actual port if it was 0 */
+	public SocketAddress getAddress() { return address; }
+
+	/** @return		the number of requests answered so far */
+	public long getRequests() { return requests; }
+
+	/** @return		the number of rounds that evaluated requests */
+	public long getBatches() { return batches; }
+
+	/** Stop serving and close every connection */
+	public void close() throws IOException {
+		closed = true;
+		if (thread == null) {
+			shutdown();
+			return;
+		}
+		selector.wakeup();
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			while (!closed) {
+				boolean backlog = false;
+				for (Session s : sessions)
+					if (!s.requests.isEmpty() && s.out.position() <= MAX_PENDING) backlog = true;
+				if (backlog)
+					selector.selectNow();		// keep going through what is queued
+				else
+					selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+					if (key.isAcceptable())
+						accept();
+					else {
+						Session s = (Session)key.attachment();
+						if (key.isReadable()) read(s);
+						if (key.isValid() && key.isWritable()) write(s);
+					}
+				}
+				evaluate();
+			}
+		}
+		catch (IOException e) {
+			if (!closed) throw new UncheckedIOException(e);
+		}
+		finally {
+			shutdown();
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			Session s = new Session(channel, key, new EvalContext(calc.getVariables()));
+			key.attach(s);
+			sessions.add(s);
+		}
+	}
+
+	/** split what a connection has sent into request lines */
+	private void read(Session s) {
+		int n;
+		do {
+			in.clear();
+			try {
+				n = s.channel.read(in);
+			}
+			catch (IOException e) {
+				drop(s);
+				return;
+			}
+			in.flip();
+			while (in.hasRemaining()) {
+				byte b = in.get();
+				if (b == '\n')
+					endLine(s);
+				else if (s.lineLength == MAX_LINE)
+					s.tooLong = true;
+				else {
+					if (s.lineLength == s.line.length)
+						s.line = Arrays.copyOf(s.line, Math.min(MAX_LINE, s.line.length * 2));
+					s.line[s.lineLength++] = b;
+				}
+			}
+		} while (n == BUFFER_SIZE && s.requests.size() < MAX_BATCH);
+		if (s.requests.size() >= MAX_BATCH && n >= 0)	// resumed by write once answered
+			s.key.interestOps(s.key.interestOps() & ~SelectionKey.OP_READ);
+		if (n < 0) {
+			if (s.lineLength > 0 || s.tooLong) endLine(s);	// a last line without '\n'
+			s.ending = true;
+			s.key.interestOps(s.key.interestOps() & ~SelectionKey.OP_READ);
+			if (s.requests.isEmpty() && s.out.position() == 0) drop(s);
+		}
+	}
+
+	private void endLine(Session s) {
+		int length = s.lineLength;
+		if (length > 0 && s.line[length - 1] == '\r') length--;
+		s.requests.add(s.tooLong ? TOO_LONG : new String(s.line, 0, length, StandardCharsets.UTF_8));
+		s.lineLength = 0;
+		s.tooLong = false;
+	}
+
+	/**
+	 *	Answer up to MAX_BATCH queued requests, taking sessions in turn from
+	 *	where the last round stopped, then send the answers
+	 */
+	private void evaluate() {
+		int budget = MAX_BATCH;
+		int count = sessions.size();
+		for (int k = 0; k < count && budget > 0; k++) {
+			int i = (next + k) % count;
+			Session s = sessions.get(i);
+			if (s.requests.isEmpty() || s.out.position() > MAX_PENDING) continue;
+			ready.add(s);
+			while (budget > 0 && !s.requests.isEmpty()) {
+				String request = s.requests.poll();
+				if (request == TOO_LONG)
+					text(s, "error: request longer than " + MAX_LINE + " bytes");
+				else
+					answer(s, request);
+				budget--;
+			}
+			if (budget == 0) next = i + 1;	// the rest go first next round
+		}
+		if (ready.isEmpty()) return;
+		requests += MAX_BATCH - budget;
+		batches++;
+		for (Session s : ready)
+			write(s);
+		ready.clear();
+	}
+
+	private void answer(Session s, String request) {
+		if (!request.isBlank()) {
+			try {
+				String name = newName(request);
+				if (name != null) {
+					text(s, "error: too many variables to add \"" + name + "\"");
+					return;
+				}
+				double value = calc.expression(request).evaluate(s.context);
+				int n = DoubleFormat.format(value, number, 0);
+				s.reserve(n + 1);
+				for (int i = 0; i < n; i++)
+					s.out.put((byte)number[i]);		// numbers are ASCII
+			}
+			catch (IllegalArgumentException e) {
+				text(s, "error: " + e.getMessage());
+				return;
+			}
+			catch (RuntimeException e) {	// a bug, but only this request's
+				text(s, "error: " + e);
+				return;
+			}
+		}
+		s.reserve(1);
+		s.out.put((byte)'\n');
+	}
+
+	/**
+	 *	@return		a variable name the request would add to the shared
+	 *				table, if the table is full, or else null
+	 */
+	private String newName(String request) {
+		SymbolTable variables = calc.getVariables();
+		if (variables.size() < MAX_NAMES) return null;
+		int n = lexer.tokenize(request, tokens);
+		for (int i = 0; i < n; i++) {
+			if (tokens.kind(i) != TokenBuffer.IDENTIFIER
+					|| (i + 1 < n && tokens.isOperator(i + 1, '(')))	// a function
+				continue;
+			if (variables.find(tokens.text(), tokens.textStart(i), tokens.textLength(i)) < 0)
+				return new String(tokens.text(), tokens.textStart(i), tokens.textLength(i));
+		}
+		return null;
+	}
+
+	private void text(Session s, String line) {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		s.reserve(bytes.length + 1);
+		s.out.put(bytes).put((byte)'\n');
+	}
+
+	/** send as much of a session's responses as the socket takes */
+	private void write(Session s) {
+		if (!s.key.isValid()) return;
+		s.out.flip();
+		try {
+			s.channel.write(s.out);
+		}
+		catch (IOException e) {
+			drop(s);
+			return;
+		}
+		s.out.compact();
+		int ops = 0;
+		if (!s.ending && s.out.position() <= MAX_PENDING && s.requests.size() < MAX_BATCH)
+			ops = SelectionKey.OP_READ;		// else let the client catch up first
+		if (s.out.position() > 0) ops |= SelectionKey.OP_WRITE;
+		else if (s.ending && s.requests.isEmpty()) {
+			drop(s);
+			return;
+		}
+		s.key.interestOps(ops);
+	}
+
+	private void drop(Session s) {
+		s.key.cancel();
+		try {
+			s.channel.close();
+		}
+		catch (IOException e) {
+			// closing anyway
+		}
+		s.requests.clear();
+		sessions.remove(s);
+	}
+
+	private void shutdown() {
+		for (Session s : new ArrayList<Session>(sessions))
+			drop(s);
+		try {
+			selector.close();
+			server.close();
+			if (address instanceof UnixDomainSocketAddress)
+				Files.deleteIfExists(((UnixDomainSocketAddress)address).getPath());
+		}
+		catch (IOException e) {
+			// nothing left to serve
+		}
+	}
+
+	/**
+	 *	Serve on a new thread until the process is killed
+	 *	@param calc		the calculator to serve
+	 *	@param text		the address, as for address(String)
+	 */
+	static void serve(SimpleCalc calc, String text) throws IOException {
+		SocketAddress address = address(text);
+		if (address instanceof UnixDomainSocketAddress)
+			Files.deleteIfExists(((UnixDomainSocketAddress)address).getPath());	// left by a crash
+		CalcServer server = new CalcServer(calc, address);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				server.close();
+			}
+			catch (IOException e) {
+				// exiting anyway
+			}
+		}));
+		server.start();
+		System.err.println("serving on " + server.getAddress());
+	}
+}
@@ -0,0 +1,485 @@
+import java.util.Arrays;
+
+/**
+ *	An immutable, compiled arithmetic expression produced by ExprCompiler.
+ *	The expression is stored as a flat postfix (RPN) opcode array where
+ *	numeric literals are already parsed into a constant pool and variables
+ *	are already resolved to slots in the variable database, so evaluating
+ *	it again does no parsing and no String comparisons.
+ *
+ *	Instructions are laid out in the int[] code as an opcode optionally
+ *	followed by a single operand:
+ *		CONST idx		push constants[idx]
+ *		LOAD slot		push the value of variable slot
+ *		NEG				negate the top of the stack
+ *		ADD, SUB, MUL, DIV, MOD, POW	pop two values, push the result
+ *		DUP				push another copy of the top of the stack
+ *		KEEP r			copy the top of the stack into register r, leaving it
+ *		REG r			push the value of register r
+ *		CALL f			pop the arguments of MathFunctions function f, push
+ *						the result
+ *		MEMO k end		if memo k is still valid push its value and jump to end
+ *		SAVE k			remember the top of the stack as memo k
+ *
+ *	MEMO/SAVE pairs wrap sub-expressions that ExprCompiler chose to memoize
+ *	(see ExprCompiler.setMemoize). A memo remembers the versions of the
+ *	variables it reads and is reused until one of them is assigned again.
+ *	Memos are the only mutable state in a program; they are immutable
+ *	objects swapped in as a whole, so a program can still be shared
+ *	between threads.
+ *
+ *	KEEP/REG pairs come from common-subexpression elimination: a
+ *	sub-expression that occurs more than once is computed once, kept in a
+ *	register and pushed again where it recurs. Registers are scratch
+ *	slots after the value stack, numbered by their index in the same
+ *	array, so getMaxStack covers them and every evaluator needs no
+ *	separate register file.
+ *
+ *	A program can also be turned into JVM bytecode (see BytecodeGenerator)
+ *	once it has been run enough times to be worth it (setCodeGeneration).
+ *	Until then, and for programs with memos, it is interpreted.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public final class CompiledExpression {
+
+	// opcodes
+	public static final int CONST = 0;
+	public static final int LOAD = 1;
+	public static final int NEG = 2;
+	public static final int ADD = 3;
+	public static final int SUB = 4;
+	public static final int MUL = 5;
+	public static final int DIV = 6;
+	public static final int MOD = 7;
+	public static final int POW = 8;
+	public static final int MEMO = 9;
+	public static final int SAVE = 10;
+	public static final int CALL = 11;
+	public static final int DUP = 12;
+	public static final int KEEP = 13;
+	public static final int REG = 14;
+
+	/** a remembered sub-expression value and the variable versions it used */
+	private static final class Memo {
+		final double value;
+		final long[] versions;
+
+		Memo(double value, long[] versions) {
+			this.value = value;
+			this.versions = versions;
+		}
+	}
+
+	private final String source;		// original expression text (may be null)
+	private final int[] code;			// opcodes and their operands
+	private final double[] constants;	// pre-parsed numeric literals
+	private final int target;			// variable slot assigned to, or -1
+	private final int maxStack;			// deepest the value stack gets, plus registers
+	private final int registers;		// scratch registers after the stack
+	private final int savedOperations;	// operations shared registers avoid
+	private final int[][] memoDeps;		// variable slots each memo reads
+	private final Memo[] memos;			// current memo values (null = none yet)
+	private final String[] literals;	// text of each constant, or null
+	private volatile int[] inputs;		// slots read, computed on first use
+	private volatile GeneratedExpression generated;	// bytecode version, once hot
+	private int countdown = -1;		// runs left before generating; < 0 = never
+
+	CompiledExpression(String source, int[] code, double[] constants,
+			int target, int maxStack) {
+		this(source, code, constants, target, maxStack, new int[0][]);
+	}
+
+	CompiledExpression(String source, int[] code, double[] constants,
+			int target, int maxStack, int[][] memoDeps) {
+		this(source, code, constants, target, maxStack, memoDeps, null);
+	}
+
+	CompiledExpression(String source, int[] code, double[] constants,
+			int target, int maxStack, int[][] memoDeps, String[] literals) {
+		this(source, code, constants, target, maxStack, memoDeps, literals, 0, 0);
+	}
+
+	CompiledExpression(String source, int[] code, double[] constants,
+			int target, int maxStack, int registers, int savedOperations) {
+		this(source, code, constants, target, maxStack, new int[0][], null,
+			registers, savedOperations);
+	}
+
+	private CompiledExpression(String source, int[] code, double[] constants,
+			int target, int maxStack, int[][] memoDeps, String[] literals,
+			int registers, int savedOperations) {
+		this.source = source;
+		this.literals = literals;
+		this.code = code;
+		this.constants = constants;
+		this.target = target;
+		this.maxStack = maxStack;
+		this.registers = registers;
+		this.savedOperations = savedOperations;
+		this.memoDeps = memoDeps;
+		memos = new Memo[memoDeps.length];
+	}
+
+	/** @return		the expression text this was compiled from, or null */
+	public String getSource() { return source; }
+
+	/** @return		the variable slot this expression assigns to, or -1 if none */
+	public int getTarget() { return target; }
+
+	/** @return		true if this expression is an assignment like "x = ..." */
+	public boolean isAssignment() { return target >= 0; }
+
+	/**
+	 *	@return		the maximum number of values on the stack during evaluation,
+	 *				including the registers after it
+	 */
+	public int getMaxStack() { return maxStack; }
+
+	/** @return		the number of registers holding shared sub-expressions */
+	public int getRegisterCount() { return registers; }
+
+	/**
+	 *	@return		how many operations (arithmetic and function calls) each
+	 *				evaluation saves by reusing shared sub-expressions
+	 */
+	public int getSavedOperations() { return savedOperations; }
+
+	/** @return		the number of memoized sub-expressions */
+	public int getMemoCount() { return memoDeps.length; }
+
+	/**
+	 *	Generate bytecode for this program after it has been interpreted a
+	 *	number of times; programs with memos are always interpreted
+	 *	@param threshold	runs to interpret first (0 = generate on the next
+	 *						run), or -1 to never generate
+	 */
+	void setCodeGeneration(int threshold) {
+		countdown = memos.length == 0 ? threshold : -1;
+	}
+
+	/** @return		true if this program now runs as generated bytecode */
+	public boolean isGenerated() { return generated != null; }
+
+	/**
+	 *	Count a run and generate the bytecode when the count runs out.
+	 *	The count is not exact between threads, which only moves the moment
+	 *	the code is generated.
+	 *	@return		the generated code, or null to interpret this run
+	 */
+	private GeneratedExpression hot() {
+		GeneratedExpression code = generated;
+		if (code != null || countdown < 0 || --countdown >= 0) return code;
+		synchronized (this) {
+			if (generated == null) {
+				try {
+					generated = BytecodeGenerator.generate(this);
+				}
+				catch (IllegalStateException e) {
+					return null;	// e.g. too long for one method; keep interpreting
+				}
+			}
+			return generated;
+		}
+	}
+
+	/** @return		the slots of the variables the program reads, without repeats */
+	public int[] getInputs() { return inputs().clone(); }
+
+	/** @return		the slots the program reads, shared; do not modify */
+	int[] inputs() {
+		int[] result = inputs;
+		if (result == null) {	// racing threads compute the same array
+			result = new int[8];
+			int count = 0;
+			for (int pc = 0; pc < code.length; pc += length(code[pc])) {
+				if (code[pc] != LOAD) continue;
+				int slot = code[pc + 1];
+				boolean seen = false;
+				for (int i = 0; i < count && !seen; i++) seen = result[i] == slot;
+				if (seen) continue;
+				if (count == result.length) result = Arrays.copyOf(result, count * 2);
+				result[count++] = slot;
+			}
+			inputs = result = Arrays.copyOf(result, count);
+		}
+		return result;
+	}
+
+	/** @return		the opcodes and operands, for other evaluators; do not modify */
+	int[] code() { return code; }
+
+	/** @return		the constant pool, for other evaluators; do not modify */
+	double[] constants() { return constants; }
+
+	/**
+	 *	@return		the source text of each constant, or null unless compiled
+	 *				with ExprCompiler.setExact; do not modify
+	 */
+	String[] literals() { return literals; }
+
+	/**
+	 *	Run the program.
+	 *	@param stack		scratch space of at least getMaxStack() values
+	 *	@param variables	the variable database the slots were resolved against
+	 *	@return				the value of the expression
+	 */
+	public double run(double[] stack, SymbolTable variables) {
+		GeneratedExpression fast = hot();
+		if (fast != null) return fast.evaluate(variables);
+		int sp = 0;		// next free stack index
+		int pc = 0;		// index into code
+		long[][] pending = null;	// versions read by memos being computed
+		while (pc < code.length) {
+			switch (code[pc++]) {
+				case CONST:
+					stack[sp++] = constants[code[pc++]];
+					break;
+				case LOAD:
+					stack[sp++] = variables.get(code[pc++]);
+					break;
+				case NEG:
+					stack[sp - 1] = -stack[sp - 1];
+					break;
+				case ADD:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] + stack[sp];
+					break;
+				case SUB:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] - stack[sp];
+					break;
+				case MUL:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] * stack[sp];
+					break;
+				case DIV:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] / stack[sp];
+					break;
+				case MOD:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] % stack[sp];
+					break;
+				case POW:
+					sp--;
+					stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+					break;
+				case DUP:
+					stack[sp] = stack[sp - 1];
+					sp++;
+					break;
+				case KEEP:
+					stack[code[pc++]] = stack[sp - 1];
+					break;
+				case REG:
+					stack[sp++] = stack[code[pc++]];
+					break;
+				case CALL:
+					sp = call(code[pc++], stack, sp);
+					break;
+				case MEMO: {
+					int k = code[pc++];
+					int end = code[pc++];
+					Memo memo = memos[k];
+					if (memo != null && isCurrent(memo, memoDeps[k], variables)) {
+						stack[sp++] = memo.value;
+						pc = end;
+					}
+					else {
+						// take the versions before reading any values
+						if (pending == null) pending = new long[memos.length][];
+						pending[k] = versions(memoDeps[k], variables);
+					}
+					break;
+				}
+				case SAVE: {
+					int k = code[pc++];
+					memos[k] = new Memo(stack[sp - 1], pending[k]);
+					break;
+				}
+				default:
+					throw new IllegalStateException("bad opcode " + code[pc - 1]);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 *	Run the program with variable values taken from an array instead of
+	 *	the variable database, e.g. values bound by one EvalContext. Memos
+	 *	are neither used nor updated, since they belong to the database.
+	 *	@param stack		scratch space of at least getMaxStack() values
+	 *	@param values		variable values indexed by slot, covering every
+	 *						slot in inputs()
+	 *	@return				the value of the expression
+	 */
+	public double run(double[] stack, double[] values) {
+		GeneratedExpression fast = hot();
+		if (fast != null) return fast.evaluate(values);
+		int sp = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			switch (code[pc++]) {
+				case CONST:
+					stack[sp++] = constants[code[pc++]];
+					break;
+				case LOAD:
+					stack[sp++] = values[code[pc++]];
+					break;
+				case NEG:
+					stack[sp - 1] = -stack[sp - 1];
+					break;
+				case ADD:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] + stack[sp];
+					break;
+				case SUB:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] - stack[sp];
+					break;
+				case MUL:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] * stack[sp];
+					break;
+				case DIV:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] / stack[sp];
+					break;
+				case MOD:
+					sp--;
+					stack[sp - 1] = stack[sp - 1] % stack[sp];
+					break;
+				case POW:
+					sp--;
+					stack[sp - 1] = Math.pow(stack[sp - 1], stack[sp]);
+					break;
+				case DUP:
+					stack[sp] = stack[sp - 1];
+					sp++;
+					break;
+				case KEEP:
+					stack[code[pc++]] = stack[sp - 1];
+					break;
+				case REG:
+					stack[sp++] = stack[code[pc++]];
+					break;
+				case CALL:
+					sp = call(code[pc++], stack, sp);
+					break;
+				case MEMO:
+					pc += 2;
+					break;
+				case SAVE:
+					pc++;
+					break;
+				default:
+					throw new IllegalStateException("bad opcode " + code[pc - 1]);
+			}
+		}
+		return stack[0];
+	}
+
+	/**
+	 *	@return		true if none of the variables a memo read has been assigned
+	 */
+	private static boolean isCurrent(Memo memo, int[] deps, SymbolTable variables) {
+		long[] versions = memo.versions;
+		for (int i = 0; i < deps.length; i++)
+			if (variables.version(deps[i]) != versions[i])
+				return false;
+		return true;
+	}
+
+	private static long[] versions(int[] deps, SymbolTable variables) {
+		long[] versions = new long[deps.length];
+		for (int i = 0; i < deps.length; i++)
+			versions[i] = variables.version(deps[i]);
+		return versions;
+	}
+
+	/**
+	 *	Apply a binary operator exactly as run does; used to fold constants
+	 *	@param op	ADD, SUB, MUL, DIV, MOD or POW
+	 *	@param a	the left operand
+	 *	@param b	the right operand
+	 *	@return		a op b
+	 */
+	static double apply(int op, double a, double b) {
+		switch (op) {
+			case ADD: return a + b;
+			case SUB: return a - b;
+			case MUL: return a * b;
+			case DIV: return a / b;
+			case MOD: return a % b;
+			case POW: return Math.pow(a, b);
+			default: throw new IllegalArgumentException("not a binary opcode " + op);
+		}
+	}
+
+	/**
+	 *	Call a function on the arguments at the top of the stack
+	 *	@param f		a MathFunctions function number
+	 *	@param stack	the value stack
+	 *	@param sp		the next free stack index
+	 *	@return			the next free stack index after the call
+	 */
+	static int call(int f, double[] stack, int sp) {
+		if (MathFunctions.arity(f) == 1) {
+			stack[sp - 1] = MathFunctions.apply(f, stack[sp - 1]);
+			return sp;
+		}
+		sp--;
+		stack[sp - 1] = MathFunctions.apply(f, stack[sp - 1], stack[sp]);
+		return sp;
+	}
+
+	/**
+	 *	@param op	an opcode
+	 *	@return		how many ints the instruction takes, including the opcode
+	 */
+	static int length(int op) {
+		switch (op) {
+			case CONST: case LOAD: case SAVE: case CALL: case KEEP: case REG: return 2;
+			case MEMO: return 3;
+			default: return 1;
+		}
+	}
+
+	/**
+	 *	@return		a readable listing of the program, one instruction per line
+	 */
+	public String disassemble() {
+		StringBuilder sb = new StringBuilder();
+		int pc = 0;
+		while (pc < code.length) {
+			int op = code[pc++];
+			sb.append(NAMES[op]);
+			if (op == CONST)
+				sb.append(' ').append(constants[code[pc++]]);
+			else if (op == LOAD)
+				sb.append(' ').append('#').append(code[pc++]);
+			else if (op == MEMO)
+				sb.append(' ').append(code[pc++]).append(" -> ").append(code[pc++]);
+			else if (op == SAVE)
+				sb.append(' ').append(code[pc++]);
+			else if (op == KEEP || op == REG)
+				sb.append(' ').append('r').append(code[pc++] - (maxStack - registers));
+			else if (op == CALL)
+				sb.append(' ').append(MathFunctions.name(code[pc++]));
+			sb.append('\n');
+		}
+		if (target >= 0)
+			sb.append("STORE #").append(target).append('\n');
+		return sb.toString();
+	}
+
+	private static final String[] NAMES = { "CONST", "LOAD", "NEG", "ADD", "SUB",
+		"MUL", "DIV", "MOD", "POW", "MEMO", "SAVE", "CALL", "DUP", "KEEP", "REG" };
+
+	@Override
+	public String toString() {
+		return source == null ? "CompiledExpression" : source;
+	}
+}
@@ -0,0 +1,63 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *	A small lock-free pool of EvalContexts. Contexts are parked in a fixed
+ *	array of stripes; a thread starts at the stripe picked by its id, so
+ *	threads rarely contend, and taking or returning a context allocates
+ *	nothing. When every stripe is busy a new context is made, and when
+ *	every stripe is full a returned context is simply dropped.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class ContextPool {
+
+	private final SymbolTable variables;	// what new contexts compile against
+	private final AtomicReferenceArray<EvalContext> stripes;
+	private final int mask;
+
+	/** @param variables	the shared variable database */
+	public ContextPool(SymbolTable variables) {
+		this(variables, Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	/**
+	 *	@param variables	the shared variable database
+	 *	@param capacity		about how many idle contexts to keep
+	 */
+	public ContextPool(SymbolTable variables, int capacity) {
+		int n = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.variables = variables;
+		stripes = new AtomicReferenceArray<EvalContext>(n);
+		mask = n - 1;
+	}
+
+	/** @return		an idle context, or a new one if none is idle */
+	public EvalContext acquire() {
+		int start = stripe();
+		for (int i = 0; i <= mask; i++) {
+			int s = (start + i) & mask;
+			EvalContext ctx = stripes.get(s);
+			if (ctx != null && stripes.compareAndSet(s, ctx, null))
+				return ctx;
+		}
+		return new EvalContext(variables, this);
+	}
+
+	/** @param ctx		a context from acquire that is no longer in use */
+	public void release(EvalContext ctx) {
+		ctx.reset();
+		ctx.clearValues();
+		int start = stripe();
+		for (int i = 0; i <= mask; i++) {
+			int s = (start + i) & mask;
+			if (stripes.get(s) == null && stripes.compareAndSet(s, null, ctx))
+				return;
+		}
+	}
+
+	private int stripe() {
+		long id = Thread.currentThread().getId();
+		return (int)(id ^ (id >>> 16)) * 0x9E3779B9 >>> 16;
+	}
+}
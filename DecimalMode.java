@@ -0,0 +1,106 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ *	Arbitrary-precision decimal arithmetic with BigDecimal. Every operation
+ *	is rounded to the MathContext (34 significant digits, like IEEE 754
+ *	decimal128, by default); addition, subtraction and remainder of numbers
+ *	that fit are exact. A power with a whole exponent is computed exactly
+ *	to the precision with BigDecimal.pow; any other power goes through
+ *	double.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class DecimalMode implements NumericMode<BigDecimal> {
+
+	private final MathContext context;
+
+	/** @param context	the precision and rounding of every operation */
+	public DecimalMode(MathContext context) {
+		this.context = context;
+	}
+
+	/** @return		the precision and rounding of every operation */
+	public MathContext getContext() { return context; }
+
+	public String getName() { return "decimal:" + context.getPrecision(); }
+
+	public BigDecimal parse(String literal) {
+		try {
+			return new BigDecimal(literal, context);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad number \"" + literal + "\"");
+		}
+	}
+
+	/** the double's shortest decimal form, so 0.1 becomes 0.1 */
+	public BigDecimal fromDouble(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			throw new ArithmeticException(value + " is not a decimal number");
+		return new BigDecimal(DoubleFormat.toString(value), context);
+	}
+
+	public double toDouble(BigDecimal value) { return value.doubleValue(); }
+
+	public String format(BigDecimal value) { return value.toPlainString(); }
+
+	public BigDecimal negate(BigDecimal a) { return a.negate(context); }
+
+	public BigDecimal add(BigDecimal a, BigDecimal b) { return a.add(b, context); }
+
+	public BigDecimal subtract(BigDecimal a, BigDecimal b) { return a.subtract(b, context); }
+
+	public BigDecimal multiply(BigDecimal a, BigDecimal b) { return a.multiply(b, context); }
+
+	public BigDecimal divide(BigDecimal a, BigDecimal b) {
+		if (b.signum() == 0) throw new ArithmeticException("division by zero");
+		return a.divide(b, context);
+	}
+
+	public BigDecimal remainder(BigDecimal a, BigDecimal b) {
+		if (b.signum() == 0) throw new ArithmeticException("division by zero");
+		return a.remainder(b, context);
+	}
+
+	/** sqrt, abs, floor and ceil are computed in decimal; the rest through double */
+	@Override
+	public BigDecimal call(int function, BigDecimal a) {
+		switch (function) {
+			case MathFunctions.SQRT: return a.sqrt(context);	// throws if negative
+			case MathFunctions.ABS: return a.abs(context);
+			case MathFunctions.FLOOR: return a.setScale(0, RoundingMode.FLOOR);
+			case MathFunctions.CEIL: return a.setScale(0, RoundingMode.CEILING);
+			default: return NumericMode.super.call(function, a);
+		}
+	}
+
+	/** min and max are exact; the rest go through double */
+	@Override
+	public BigDecimal call(int function, BigDecimal a, BigDecimal b) {
+		switch (function) {
+			case MathFunctions.MIN: return a.compareTo(b) <= 0 ? a : b;
+			case MathFunctions.MAX: return a.compareTo(b) >= 0 ? a : b;
+			default: return NumericMode.super.call(function, a, b);
+		}
+	}
+
+	/** whole exponents are exact; others, and huge ones, go through double */
+	public BigDecimal power(BigDecimal a, BigDecimal b) {
+		int n;
+		try {
+			n = b.intValueExact();
+		}
+		catch (ArithmeticException e) {
+			n = Integer.MIN_VALUE;		// not a whole number, or too big
+		}
+		if (n < -999999999 || n > 999999999)
+			return fromDouble(Math.pow(a.doubleValue(), b.doubleValue()));
+		if (n < 0 && a.signum() == 0) throw new ArithmeticException("division by zero");
+		if (n < 0 && context.getPrecision() == 0)	// unlimited: exact or an error
+			return BigDecimal.ONE.divide(a.pow(-n));
+		return a.pow(n, context);
+	}
+}
@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ *	Keeps assignments as live formulas, like cells in a spreadsheet. Each
+ *	variable defined by an assignment remembers its compiled definition and
+ *	the variables it reads; when a variable changes, only the definitions
+ *	downstream of it are evaluated again, in dependency (topological)
+ *	order, so updating a model of thousands of formulas costs time
+ *	proportional to what actually depends on the change.
+ *	o Defining a variable in terms of itself, directly or through other
+ *		definitions, is rejected and leaves the old definition in place.
+ *	o Setting a variable to a plain value (set) replaces its formula.
+ *	o Constants like pi never get a formula: an assignment to one is
+ *		evaluated and otherwise ignored, as it is outside reactive mode.
+ *	Variables are identified by their SymbolTable slot. All methods are
+ *	synchronized, so one graph can be shared by threads.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class DependencyGraph {
+
+	private final SymbolTable variables;
+	private CompiledExpression[] formulas;	// definition of each slot, or null
+	private int[][] inputs;				// slots each definition reads
+	private int[][] dependents;			// slots whose definitions read each slot
+	private int[] dependentCount;
+
+	// scratch for graph walks; a slot is visited if mark[slot] == epoch
+	private int[] mark;
+	private int epoch;
+	private int[] walk;				// explicit DFS stack of slots
+	private int[] next;				// per stack entry, the next dependent to visit
+	private int[] order;			// slots in reverse topological order
+	private double[] stack;			// evaluation stack
+	private long recomputed;		// definitions evaluated because of a change
+
+	/** @param variables	the variable database the formulas were compiled against */
+	public DependencyGraph(SymbolTable variables) {
+		this.variables = variables;
+		formulas = new CompiledExpression[0];
+		inputs = new int[0][];
+		dependents = new int[0][];
+		dependentCount = new int[0];
+		mark = new int[0];
+		walk = new int[16];
+		next = new int[16];
+		order = new int[16];
+		stack = new double[16];
+	}
+
+	/**
+	 *	Store an assignment as the definition of its target, evaluate it and
+	 *	bring everything that depends on the target up to date
+	 *	@param program		a compiled assignment
+	 *	@return				the new value of the target
+	 *	@throws IllegalArgumentException if the program is not an assignment,
+	 *					or the definition would depend on itself
+	 */
+	public synchronized double define(CompiledExpression program) {
+		if (!program.isAssignment())
+			throw new IllegalArgumentException("not an assignment: " + program.getSource());
+		int target = program.getTarget();
+		if (variables.isReadOnly(target))
+			return evaluate(program);		// the SymbolTable ignores it too
+		int[] reads = program.getInputs();
+		ensureSlots(variables.size());
+		int through = reaches(target, reads);
+		if (through >= 0)
+			throw new IllegalArgumentException("circular definition of "
+				+ variables.name(target) + (through == target ? ""
+					: " through " + variables.name(through)));
+		unlink(target);
+		formulas[target] = program;
+		inputs[target] = reads;
+		for (int slot : reads)
+			addDependent(slot, target);
+		double value = evaluate(program);
+		recompute(target);
+		return value;
+	}
+
+	/**
+	 *	Give a variable a plain value, dropping its definition, and bring
+	 *	everything that depends on it up to date
+	 *	@param slot		a variable slot
+	 *	@param value	the new value
+	 */
+	public synchronized void set(int slot, double value) {
+		ensureSlots(variables.size());
+		unlink(slot);
+		formulas[slot] = null;
+		inputs[slot] = null;
+		variables.set(slot, value);
+		recompute(slot);
+	}
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@return			the variable's definition, or null if it is a plain value
+	 */
+	public synchronized CompiledExpression formula(int slot) {
+		return slot < formulas.length ? formulas[slot] : null;
+	}
+
+	/** @return		how many definitions have been evaluated again after changes */
+	public synchronized long getRecomputed() { return recomputed; }
+
+	/** forget every definition, keeping the current values */
+	public synchronized void clear() {
+		Arrays.fill(formulas, null);
+		Arrays.fill(inputs, null);
+		Arrays.fill(dependents, null);
+		Arrays.fill(dependentCount, 0);
+	}
+
+	/**
+	 *	Evaluate every definition downstream of a changed slot, each after
+	 *	all of its own inputs. A depth-first walk over dependents lists each
+	 *	affected slot after everything downstream of it, so running the list
+	 *	backwards is a topological order.
+	 */
+	private void recompute(int changed) {
+		if (dependentCount[changed] == 0) return;
+		int count = 0;
+		int top = 0;
+		newEpoch();
+		mark[changed] = epoch;
+		walk[0] = changed;
+		next[0] = 0;
+		while (top >= 0) {
+			int slot = walk[top];
+			if (next[top] < dependentCount[slot]) {
+				int dependent = dependents[slot][next[top]++];
+				if (mark[dependent] != epoch) {
+					mark[dependent] = epoch;
+					if (++top == walk.length) {
+						walk = Arrays.copyOf(walk, top * 2);
+						next = Arrays.copyOf(next, top * 2);
+					}
+					walk[top] = dependent;
+					next[top] = 0;
+				}
+			}
+			else {
+				if (count == order.length) order = Arrays.copyOf(order, count * 2);
+				order[count++] = slot;
+				top--;
+			}
+		}
+		// order[count - 1] is the changed slot itself, already up to date
+		for (int i = count - 2; i >= 0; i--) {
+			evaluate(formulas[order[i]]);
+			recomputed++;
+		}
+	}
+
+	/**
+	 *	@return		a slot in reads that is target or depends on target, or
+	 *				-1 if none does (the definition would not be circular)
+	 */
+	private int reaches(int target, int[] reads) {
+		for (int slot : reads)
+			if (slot == target) return target;
+		newEpoch();
+		int readEpoch = epoch;			// marks the slots in reads
+		int visitedEpoch = ++epoch;		// marks the slots already walked
+		for (int slot : reads)
+			mark[slot] = readEpoch;
+		// walk everything downstream of target looking for one of reads
+		int top = 0;
+		walk[0] = target;
+		while (top >= 0) {
+			int slot = walk[top--];
+			for (int i = 0; i < dependentCount[slot]; i++) {
+				int dependent = dependents[slot][i];
+				if (mark[dependent] == readEpoch)
+					return dependent;
+				if (mark[dependent] == visitedEpoch) continue;
+				mark[dependent] = visitedEpoch;
+				if (++top == walk.length) {
+					walk = Arrays.copyOf(walk, top * 2);
+					next = Arrays.copyOf(next, top * 2);
+				}
+				walk[top] = dependent;
+			}
+		}
+		return -1;
+	}
+
+	private double evaluate(CompiledExpression program) {
+		if (stack.length < program.getMaxStack())
+			stack = new double[program.getMaxStack()];
+		double value = program.run(stack, variables);
+		variables.set(program.getTarget(), value);
+		return value;
+	}
+
+	/** remove slot from the dependents of everything its definition reads */
+	private void unlink(int slot) {
+		if (inputs[slot] == null) return;
+		for (int input : inputs[slot]) {
+			int[] list = dependents[input];
+			int n = dependentCount[input];
+			for (int i = 0; i < n; i++) {
+				if (list[i] == slot) {
+					list[i] = list[--n];
+					break;
+				}
+			}
+			dependentCount[input] = n;
+		}
+	}
+
+	private void addDependent(int slot, int dependent) {
+		int[] list = dependents[slot];
+		int n = dependentCount[slot];
+		if (list == null) list = dependents[slot] = new int[4];
+		else if (n == list.length) list = dependents[slot] = Arrays.copyOf(list, n * 2);
+		list[n] = dependent;
+		dependentCount[slot] = n + 1;
+	}
+
+	private void ensureSlots(int size) {
+		if (formulas.length >= size) return;
+		int n = Math.max(size, formulas.length * 2);
+		formulas = Arrays.copyOf(formulas, n);
+		inputs = Arrays.copyOf(inputs, n);
+		dependents = Arrays.copyOf(dependents, n);
+		dependentCount = Arrays.copyOf(dependentCount, n);
+		mark = Arrays.copyOf(mark, n);
+	}
+
+	/** start a new walk; wraps around by clearing the marks */
+	private void newEpoch() {
+		if (epoch >= Integer.MAX_VALUE - 2) {
+			Arrays.fill(mark, 0);
+			epoch = 0;
+		}
+		epoch++;
+	}
+}
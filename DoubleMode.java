@@ -0,0 +1,65 @@
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ *	The usual double arithmetic as a NumericMode, giving exactly the
+ *	results of SimpleCalc.evaluate. Mostly useful for comparing with the
+ *	exact modes; SimpleCalc itself evaluates doubles without boxing.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class DoubleMode implements NumericMode<Double> {
+
+	public String getName() { return "double"; }
+
+	public Double parse(String literal) { return DoubleParser.parse(literal); }
+
+	public Double fromDouble(double value) { return value; }
+
+	public double toDouble(Double value) { return value; }
+
+	public String format(Double value) { return DoubleFormat.toString(value); }
+
+	public Double negate(Double a) { return -a; }
+
+	public Double add(Double a, Double b) { return a + b; }
+
+	public Double subtract(Double a, Double b) { return a - b; }
+
+	public Double multiply(Double a, Double b) { return a * b; }
+
+	public Double divide(Double a, Double b) { return a / b; }
+
+	public Double remainder(Double a, Double b) { return a % b; }
+
+	public Double power(Double a, Double b) { return Math.pow(a, b); }
+
+	/** evaluate on a primitive stack, boxing only the result */
+	@Override
+	public Double evaluate(CompiledExpression program, List<Double> constants,
+			IntFunction<Double> variables) {
+		int[] code = program.code();
+		double[] stack = new double[program.getMaxStack()];
+		int sp = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			int op = code[pc++];
+			switch (op) {
+				case CompiledExpression.CONST: stack[sp++] = constants.get(code[pc++]); break;
+				case CompiledExpression.LOAD: stack[sp++] = variables.apply(code[pc++]); break;
+				case CompiledExpression.NEG: stack[sp - 1] = -stack[sp - 1]; break;
+				case CompiledExpression.DUP: stack[sp] = stack[sp - 1]; sp++; break;
+				case CompiledExpression.KEEP: stack[code[pc++]] = stack[sp - 1]; break;
+				case CompiledExpression.REG: stack[sp++] = stack[code[pc++]]; break;
+				case CompiledExpression.CALL: sp = CompiledExpression.call(code[pc++], stack, sp); break;
+				case CompiledExpression.MEMO: pc += 2; break;
+				case CompiledExpression.SAVE: pc++; break;
+				default:
+					sp--;
+					stack[sp - 1] = CompiledExpression.apply(op, stack[sp - 1], stack[sp]);
+			}
+		}
+		return stack[0];
+	}
+}
@@ -0,0 +1,54 @@
+import java.util.EmptyStackException;
+/**
+ * Stack of primitive doubles backed by a growable array, so pushing and
+ * popping never boxes a value into a Double
+ * 
+ * @author Rishi Salvi
+ * @since October 18, 2026
+ */
+ public class DoubleStack {
+	 private double[] theStack; 
+	 private int size; 
+	 
+	 public DoubleStack(){
+		 this(16); 
+	 }
+	 
+	 /** @param capacity		the initial number of values the stack can hold */
+	 public DoubleStack(int capacity){
+		 theStack = new double[Math.max(1, capacity)]; 
+	 }
+	 
+	 /** @return		true if the stack is empty; false otherwise */
+	 public boolean isEmpty() {return size == 0; }
+	 
+	 /** @return		the number of values on the stack */
+	 public int size() {return size; }
+	 
+	 /** @return		the top value on the stack */
+	 public double peek(){
+		 if (size == 0)
+			throw new EmptyStackException(); 
+		return theStack[size - 1]; 
+	}
+	
+	/** @param value		the value to put on the top of the stack */
+	public void push (double value){
+		if (size == theStack.length){
+			double[] bigger = new double[size * 2]; 
+			System.arraycopy(theStack, 0, bigger, 0, size); 
+			theStack = bigger; 
+		}
+		theStack[size++] = value; 
+	}
+	
+	/** @return			the value removed from the top of the stack */
+	public double pop(){
+		if (size == 0)
+			throw new EmptyStackException();
+		return theStack[--size]; 
+	}
+	
+	/** remove every value, keeping the storage for reuse */
+	public void clear() {size = 0; }
+ }
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ *	The scratch state one evaluation needs: the tokenizer and its token
+ *	buffer, a compiler, and the value and operator stacks. A context is used
+ *	by one thread at a time; SimpleCalc hands them out from a ContextPool so
+ *	that many threads can evaluate against one shared SymbolTable, and so
+ *	that the stacks are reused instead of allocated for every expression.
+ *
+ *	A context can also hold its own variable values (set), which an
+ *	Expression evaluated with this context sees instead of the shared ones,
+ *	so one request's inputs never leak into another's. Closing a context
+ *	from a pool forgets its values and returns it to the pool:
+ *		try (EvalContext ctx = Calc.context()) {
+ *			ctx.set("x", 2);
+ *			double y = expression.evaluate(ctx);
+ *		}
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class EvalContext implements AutoCloseable {
+
+	private ExprUtils utils;		// tokenizer, made on first use
+	final TokenBuffer tokens;		// typed tokens for compile
+	final ExprCompiler compiler;	// compiler bound to the shared variables
+	final DoubleStack valueStack;	// value stack
+	final IntStack operatorStack;	// operator stack (operator characters)
+	double[] programStack;			// scratch stack for compiled programs
+	private BatchEvaluator batch;	// scratch columns, made on first use
+
+	private final SymbolTable variables;
+	private final ContextPool pool;	// where close returns this, or null
+	private double[] values;		// own values and a frame for Expression, by slot
+	private int[] boundIn;			// slot is set here if boundIn[slot] == generation
+	private int generation;
+
+	/** @param variables	the variable database to compile against */
+	public EvalContext(SymbolTable variables) {
+		this(variables, null);
+	}
+
+	/**
+	 *	@param variables	the variable database to compile against
+	 *	@param pool			the pool close returns this context to, or null
+	 */
+	EvalContext(SymbolTable variables, ContextPool pool) {
+		this.variables = variables;
+		this.pool = pool;
+		values = new double[0];
+		boundIn = new int[0];
+		generation = 1;
+		tokens = new TokenBuffer();
+		compiler = new ExprCompiler(variables);
+		valueStack = new DoubleStack();
+		operatorStack = new IntStack();
+		programStack = new double[16];
+	}
+
+	/**
+	 *	@param size		the number of values needed
+	 *	@return			a scratch stack of at least size values
+	 */
+	double[] programStack(int size) {
+		if (programStack.length < size)
+			programStack = new double[Math.max(size, programStack.length * 2)];
+		return programStack;
+	}
+
+	/** @return		the variable database this context compiles against */
+	SymbolTable variables() { return variables; }
+
+	/** @return		this context's tokenizer */
+	ExprUtils utils() {
+		if (utils == null) utils = new ExprUtils();
+		return utils;
+	}
+
+	/** @return		this context's batch evaluator */
+	BatchEvaluator batch() {
+		if (batch == null) batch = new BatchEvaluator();
+		return batch;
+	}
+
+	/**
+	 *	Give a variable a value seen only by evaluations with this context
+	 *	@param name		the variable's name
+	 *	@param value	its value
+	 *	@throws IllegalArgumentException if name is a constant like pi
+	 */
+	public void set(String name, double value) {
+		set(variables.intern(name), value);
+	}
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@param value	its value in this context
+	 *	@throws IllegalArgumentException if slot holds a constant
+	 */
+	public void set(int slot, double value) {
+		if (variables.isReadOnly(slot))
+			throw new IllegalArgumentException("cannot assign to constant \""
+				+ variables.name(slot) + "\"");
+		if (slot >= values.length) grow(variables.size());
+		values[slot] = value;
+		boundIn[slot] = generation;
+	}
+
+	/**
+	 *	@param name		a variable's name
+	 *	@return			its value in this context, or the shared value if it
+	 *					has none here
+	 */
+	public double get(String name) {
+		int slot = variables.find(name);
+		if (slot < 0) return 0.0;
+		return isSet(slot) ? values[slot] : variables.get(slot);
+	}
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@return			true if this context has its own value for it
+	 */
+	public boolean isSet(int slot) {
+		return slot < boundIn.length && boundIn[slot] == generation;
+	}
+
+	/** forget every value set in this context (takes constant time) */
+	public void clearValues() {
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(boundIn, 0);
+			generation = 1;
+		}
+	}
+
+	/** forget this context's values and return it to its pool, if any */
+	@Override
+	public void close() {
+		if (pool != null) pool.release(this);
+		else clearValues();
+	}
+
+	/**
+	 *	Fill in the values a program reads: this context's own where it has
+	 *	them, the shared ones otherwise
+	 *	@param program		the program about to run
+	 *	@return				values indexed by slot, for CompiledExpression.run
+	 */
+	double[] frame(CompiledExpression program) {
+		int[] inputs = program.inputs();
+		int size = Math.max(variables.size(), program.getTarget() + 1);
+		if (values.length < size) grow(size);
+		for (int slot : inputs)
+			if (boundIn[slot] != generation)
+				values[slot] = variables.get(slot);
+		return values;
+	}
+
+	private void grow(int size) {
+		int n = Math.max(size, values.length * 2);
+		values = Arrays.copyOf(values, n);
+		boundIn = Arrays.copyOf(boundIn, n);
+	}
+
+	/** empty the stacks, e.g. after an evaluation failed part way */
+	void reset() {
+		valueStack.clear();
+		operatorStack.clear();
+	}
+}
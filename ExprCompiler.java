@@ -0,0 +1,842 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *	Compiles the tokens produced by ExprUtils.tokenizeExpression, or typed
+ *	tokens from ExprLexer, into a CompiledExpression using the shunting-yard
+ *	algorithm.
+ *	o Numeric literals are parsed once, here, into the constant pool.
+ *	o Variables are looked up once and replaced by their slot in the
+ *		SymbolTable; unknown variables are created with value 0
+ *		just like SimpleCalc.getNumber does.
+ *	o Operators follow PEMDAS: ^ is right associative and binds tightest,
+ *		then unary minus, then *, / and %, then + and -, all left associative.
+ *		A sign the tokenizer attached to a number belongs to that number, so
+ *		"-2^2" is 4 but "-(2)^2" is -4.
+ *	o A name followed by "(" calls a built-in function (see MathFunctions),
+ *		with arguments separated by commas, e.g. "max(a, sqrt(b))".
+ *	o A leading "name =" makes the expression an assignment.
+ *	o Constant sub-expressions, made of numbers and read-only constants like
+ *		pi, are folded into a single number, so "2 * pi * 3 ^ 4 * r" only
+ *		multiplies by r at run time. Folding uses the same arithmetic as
+ *		evaluation, so the results are identical.
+ *	o Powers with a constant exponent are strength-reduced: x ^ 2 becomes
+ *		x * x, x ^ 1 becomes x, and x ^ 0.5 becomes a square root. Each gives
+ *		exactly what Math.pow would, without its cost.
+ *	o For exact numeric modes (setExact) nothing is folded, and the text of
+ *		every number is kept so that NumericMode can parse it exactly.
+ *	o Sub-expressions that occur more than once, like a + b in
+ *		"(a + b) * (a + b) / (a + b - c)", are computed once: the program is
+ *		treated as a DAG of hash-consed nodes, the first occurrence of a
+ *		shared node is kept in a register, and later ones just read it.
+ *		Operands of + and * may be swapped, since that doesn't change the
+ *		result. See CompiledExpression.getSavedOperations.
+ *	o Optionally (setMemoize), sub-expressions that read fewer variables
+ *		than their parent are wrapped in MEMO/SAVE so their value is reused
+ *		until one of the variables they read changes.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class ExprCompiler {
+
+	private SymbolTable variables;	// variable database to resolve slots in
+
+	// growable program being built
+	private int[] code;
+	private int codeSize;
+	private double[] constants;
+	private int constSize;
+	private int depth, maxDepth;		// simulated value stack depth
+
+	// operator stack for shunting-yard (operator characters)
+	private char[] ops;
+	private int opsSize;
+	private static final char NEGATE = '~';	// unary minus on the operator stack
+	// a function call on the operator stack: FUNCTION + 2 * function, + 1 if negated
+	private static final char FUNCTION = '\u0100';
+	private int[] args;				// commas seen so far in each open call
+	private int argsSize;
+
+	private TokenBuffer scratch;	// for compiling List<String> tokens
+
+	// what is known about each simulated stack entry, for constant folding
+	private int[] entryStart;		// where the entry's code starts
+	private boolean[] entryConst;	// true if the entry is a known number
+	private double[] entryValue;	// that number
+
+	// scratch space for finding shared sub-expressions, kept between compiles
+	private int[] nodeKind, nodeLeft, nodeRight;	// hash-consed nodes
+	private int[] nodeEnd;			// where each node's first occurrence ends
+	private int[] nodeTable;		// open-addressed node ids + 1
+	private int[] entryNode, entrySize, entryOps;	// per stack entry
+	private int[] repeatStart, repeatNode, repeatOps;	// by the pc a repeat ends at
+
+	private boolean memoize;		// wrap sub-expressions in MEMO/SAVE
+	private boolean exact;			// no folding; keep number text
+	private String[] literals;		// text of each constant, when exact
+	private static final int MEMO_MIN_COST = 8;	// cheaper ones aren't worth it
+	private static final int MEMO_MAX_DEPS = 4;	// too many versions to check
+	private static final int CALL_COST = 4;		// a function, next to 8 for Math.pow
+	private static final int SHARE_MIN_SIZE = 3;	// instructions; x or -x isn't worth a register
+	private static final int SHARE_CALL = 16;	// node kind of function f is SHARE_CALL + f
+
+	public ExprCompiler(SymbolTable variables) {
+		this.variables = variables;
+		code = new int[16];
+		constants = new double[8];
+		ops = new char[8];
+		args = new int[8];
+		entryStart = new int[8];
+		entryConst = new boolean[8];
+		entryValue = new double[8];
+	}
+
+	/**
+	 *	@param memoize	true to memoize sub-expressions of programs compiled from
+	 *					now on; worthwhile when most variables stay the same
+	 *					between evaluations
+	 */
+	public void setMemoize(boolean memoize) { this.memoize = memoize; }
+
+	/**
+	 *	@param exact	true to compile for NumericMode: numbers keep their
+	 *					text, and nothing is folded or memoized, since double
+	 *					arithmetic at compile time would not be exact
+	 */
+	public void setExact(boolean exact) { this.exact = exact; }
+
+	/**
+	 *	Compile a tokenized expression.
+	 *	@param tokens	tokens from ExprUtils.tokenizeExpression
+	 *	@return			the compiled program
+	 */
+	public CompiledExpression compile(List<String> tokens) {
+		return compile(null, tokens);
+	}
+
+	/**
+	 *	Compile a tokenized expression.
+	 *	@param source	the original expression text, kept for display
+	 *	@param tokens	tokens from ExprUtils.tokenizeExpression
+	 *	@return			the compiled program
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	public CompiledExpression compile(String source, List<String> tokens) {
+		if (scratch == null) scratch = new TokenBuffer(tokens.size());
+		scratch.clear();
+		for (int i = 0; i < tokens.size(); i++)
+			addToken(tokens.get(i), scratch);
+		return compile(source, scratch);
+	}
+
+	/**
+	 *	Compile typed tokens produced by ExprLexer. Identifier tokens have
+	 *	their slot filled in as a side effect.
+	 *	@param source	the original expression text, kept for display
+	 *	@param tokens	the lexed tokens
+	 *	@return			the compiled program
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	public CompiledExpression compile(String source, TokenBuffer tokens) {
+		codeSize = constSize = depth = maxDepth = opsSize = argsSize = 0;
+		int size = tokens.size();
+		int target = -1;
+		int start = 0;
+		if (size > 2 && tokens.isOperator(1, '=')) {
+			if (tokens.kind(0) != TokenBuffer.IDENTIFIER || tokens.sign(0) != 0)
+				throw new IllegalArgumentException("cannot assign to \""
+					+ tokens.tokenString(0) + "\"");
+			target = resolve(tokens, 0);
+			start = 2;
+		}
+		if (start >= size)
+			throw new IllegalArgumentException("empty expression");
+
+		boolean expectOperand = true;	// operand, "(" or unary sign comes next
+		for (int i = start; i < size; i++) {
+			int kind = tokens.kind(i);
+			if (kind == TokenBuffer.OPERATOR) {
+				char c = tokens.operator(i);
+				if (c == '(') {
+					if (!expectOperand)
+						throw new IllegalArgumentException("unexpected '(' at token " + i);
+					if (opsSize > 0 && ops[opsSize - 1] >= FUNCTION) {	// opens a call
+						if (argsSize == args.length) args = Arrays.copyOf(args, argsSize * 2);
+						args[argsSize++] = 0;
+					}
+					pushOp(c);
+				}
+				else if (c == ')') {
+					if (expectOperand)
+						throw new IllegalArgumentException("unexpected ')' at token " + i);
+					while (opsSize > 0 && ops[opsSize - 1] != '(')
+						emitOperator(ops[--opsSize]);
+					if (opsSize == 0)
+						throw new IllegalArgumentException("unbalanced ')'");
+					opsSize--;	// discard "("
+					if (opsSize > 0 && ops[opsSize - 1] >= FUNCTION)
+						emitCall(ops[--opsSize], args[--argsSize] + 1);
+				}
+				else if (c == ',') {
+					if (expectOperand)
+						throw new IllegalArgumentException("missing operand before ','");
+					while (opsSize > 0 && ops[opsSize - 1] != '(')
+						emitOperator(ops[--opsSize]);
+					if (opsSize < 2 || ops[opsSize - 2] < FUNCTION)
+						throw new IllegalArgumentException("unexpected ',' at token " + i);
+					args[argsSize - 1]++;
+					expectOperand = true;
+				}
+				else if (c == '=') {
+					throw new IllegalArgumentException("unexpected '=' at token " + i);
+				}
+				else if (expectOperand) {
+					// unary sign in front of "(" or after an operator, e.g. "2*-(3)"
+					if (c == '-')
+						pushOp(NEGATE);
+					else if (c != '+')
+						throw new IllegalArgumentException("missing operand before '"
+							+ c + "'");
+				}
+				else {
+					int prec = precedence(c);
+					while (opsSize > 0 && ops[opsSize - 1] != '('
+							&& (precedence(ops[opsSize - 1]) > prec
+							|| (precedence(ops[opsSize - 1]) == prec && c != '^')))
+						emitOperator(ops[--opsSize]);
+					pushOp(c);
+					expectOperand = true;
+				}
+			}
+			else if (kind == TokenBuffer.IDENTIFIER && i + 1 < size && tokens.isOperator(i + 1, '(')) {
+				if (!expectOperand)
+					throw new IllegalArgumentException("missing operator before \""
+						+ tokens.tokenString(i) + "\"");
+				int f = MathFunctions.find(tokens.text(), tokens.textStart(i), tokens.textLength(i));
+				if (f < 0)
+					throw new IllegalArgumentException("unknown function \""
+						+ new String(tokens.text(), tokens.textStart(i), tokens.textLength(i)) + "\"");
+				pushOp((char)(FUNCTION + 2 * f + (tokens.sign(i) == '-' ? 1 : 0)));
+			}
+			else {
+				if (!expectOperand)
+					throw new IllegalArgumentException("missing operator before \""
+						+ tokens.tokenString(i) + "\"");
+				emitOperand(tokens, i);
+				expectOperand = false;
+			}
+		}
+		if (expectOperand)
+			throw new IllegalArgumentException("expression ends with an operator");
+		while (opsSize > 0) {
+			char op = ops[--opsSize];
+			if (op == '(')
+				throw new IllegalArgumentException("unbalanced '('");
+			emitOperator(op);
+		}
+
+		if (exact) {	// nothing was folded, so the pool is already compact
+			int[] finalCode = Arrays.copyOf(code, codeSize);
+			return new CompiledExpression(source, finalCode, Arrays.copyOf(constants, constSize),
+				target, maxDepth, new int[0][],
+				constSize == 0 ? new String[0] : Arrays.copyOf(literals, constSize));
+		}
+		double[] finalConstants = compactConstants();
+		if (memoize)
+			return memoized(source, finalConstants, target);
+		return shared(source, finalConstants, target);
+	}
+
+	/**
+	 *	Folding leaves unused numbers in the constant pool; build a pool of
+	 *	just the used ones and renumber the CONST instructions
+	 *	@return		the compacted constant pool
+	 */
+	private double[] compactConstants() {
+		int used = 0;
+		for (int pc = 0; pc < codeSize; pc += CompiledExpression.length(code[pc]))
+			if (code[pc] == CompiledExpression.CONST) used++;
+		double[] pool = new double[used];
+		used = 0;
+		for (int pc = 0; pc < codeSize; pc += CompiledExpression.length(code[pc])) {
+			if (code[pc] == CompiledExpression.CONST) {
+				pool[used] = constants[code[pc + 1]];
+				code[pc + 1] = used++;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 *	Eliminate common sub-expressions. The postfix code is simulated with
+	 *	a stack of node ids, where identical sub-trees get the same id, so
+	 *	the code describes a DAG. Every later occurrence of a node that takes
+	 *	at least SHARE_MIN_SIZE instructions is replaced by REG, unless it is
+	 *	inside another replaced occurrence, and the first occurrence is
+	 *	followed by KEEP. A repeat right after the first occurrence becomes
+	 *	a DUP instead, and needs no KEEP if it is the only one. Registers
+	 *	are allocated in order of first use and freed after their last, so
+	 *	nodes that are not live at the same time share one.
+	 *	@param source		the expression text
+	 *	@param pool			the constant pool
+	 *	@param target		the assigned slot or -1
+	 *	@return				the program, with registers if anything is shared
+	 */
+	private CompiledExpression shared(String source, double[] pool, int target) {
+		ensureShareCapacity();
+		// the hash-consed nodes: a kind (opcode, or SHARE_CALL + function)
+		// and two operands (child ids, a slot, or the bits of a constant)
+		int[] kind = nodeKind, left = nodeLeft, right = nodeRight, firstEnd = nodeEnd;
+		int nodes = 0;
+		int[] table = nodeTable;
+		int mask = Integer.highestOneBit(codeSize) * 4 - 1;
+		Arrays.fill(table, 0, mask + 1, 0);
+
+		// the simulated stack: node id, where its code starts (the folding
+		// is done with entryStart), its size and operations
+		int[] id = entryNode, start = entryStart, size = entrySize, ops = entryOps;
+		int sp = 0;
+		// later occurrences, indexed by the pc they end at
+		int[] repeatStart = this.repeatStart, repeatNode = this.repeatNode;
+		int[] repeatOps = this.repeatOps;
+		Arrays.fill(repeatOps, 0, codeSize + 1, 0);
+		int repeats = 0;
+		for (int pc = 0; pc < codeSize; pc += CompiledExpression.length(code[pc])) {
+			int op = code[pc];
+			int k, a, b, from, n, cost;
+			if (op == CompiledExpression.CONST) {
+				long bits = Double.doubleToRawLongBits(pool[code[pc + 1]]);
+				k = op; a = (int)bits; b = (int)(bits >>> 32);
+				from = pc; n = 1; cost = 0;
+			}
+			else if (op == CompiledExpression.LOAD) {
+				k = op; a = code[pc + 1]; b = 0;
+				from = pc; n = 1; cost = 0;
+			}
+			else if (op == CompiledExpression.DUP) {	// the same node again
+				id[sp] = id[sp - 1];
+				start[sp] = pc;
+				size[sp] = 1;
+				ops[sp] = 0;
+				sp++;
+				continue;
+			}
+			else if (op == CompiledExpression.NEG
+					|| (op == CompiledExpression.CALL && MathFunctions.arity(code[pc + 1]) == 1)) {
+				sp--;
+				k = op == CompiledExpression.NEG ? op : SHARE_CALL + code[pc + 1];
+				a = id[sp]; b = -1;
+				from = start[sp]; n = size[sp] + 1; cost = ops[sp] + 1;
+			}
+			else {
+				sp -= 2;
+				k = op == CompiledExpression.CALL ? SHARE_CALL + code[pc + 1] : op;
+				a = id[sp]; b = id[sp + 1];
+				if ((op == CompiledExpression.ADD || op == CompiledExpression.MUL) && a > b) {
+					a = b; b = id[sp];
+				}
+				from = start[sp]; n = size[sp] + size[sp + 1] + 1; cost = ops[sp] + ops[sp + 1] + 1;
+			}
+			int end = pc + CompiledExpression.length(op);
+			int h = ((k * 0x9E3779B9 + a) * 0x9E3779B9 + b) * 0x9E3779B9;
+			int i = (h ^ (h >>> 16)) & mask;
+			int node = -1;
+			while (table[i] != 0) {
+				int m = table[i] - 1;
+				if (kind[m] == k && left[m] == a && right[m] == b) {
+					node = m;
+					break;
+				}
+				i = (i + 1) & mask;
+			}
+			if (node < 0) {
+				node = nodes++;
+				kind[node] = k;
+				left[node] = a;
+				right[node] = b;
+				firstEnd[node] = end;
+				table[i] = node + 1;
+			}
+			else if (n >= SHARE_MIN_SIZE) {
+				repeatStart[end] = from;
+				repeatNode[end] = node;
+				repeatOps[end] = cost;
+				repeats++;
+			}
+			id[sp] = node;
+			start[sp] = from;
+			size[sp] = n;
+			ops[sp] = cost;
+			sp++;
+		}
+		if (repeats == 0)
+			return new CompiledExpression(source, Arrays.copyOf(code, codeSize), pool,
+				target, maxDepth);
+
+		// keep the outermost repeats, outermost first: by start, longest first
+		long[] order = new long[repeats];
+		repeats = 0;
+		for (int end = 1; end <= codeSize; end++)
+			if (repeatOps[end] > 0)		// a repeat always has an operation
+				order[repeats++] = (long)repeatStart[end] << 32 | (codeSize - end);
+		Arrays.sort(order);
+		int[] replaceEnd = new int[codeSize];	// end of the repeat starting at pc, or 0
+		int[] uses = new int[nodes], lastUse = new int[nodes];
+		int saved = 0, coveredTo = 0;
+		for (long o : order) {
+			int from = (int)(o >>> 32), end = codeSize - (int)o;
+			if (from < coveredTo) continue;		// inside a repeat already replaced
+			coveredTo = end;
+			replaceEnd[from] = end;
+			int node = repeatNode[end];
+			uses[node]++;
+			lastUse[node] = from;
+			saved += repeatOps[end];
+		}
+
+		// rewrite, allocating registers as nodes become live and freeing them
+		int[] out = new int[codeSize + 2 * nodes];
+		int[] reg = new int[nodes], free = new int[nodes];
+		int frees = 0, registers = 0, count = 0;
+		int[] keepAt = new int[codeSize + 1];	// node id + 1 to keep at each end
+		for (int node = 0; node < nodes; node++)
+			if (uses[node] > 0) keepAt[firstEnd[node]] = node + 1;
+		for (int pc = 0; pc < codeSize; ) {
+			if (replaceEnd[pc] > 0) {
+				int node = repeatNode[replaceEnd[pc]];
+				if (pc == firstEnd[node])		// right after the first occurrence
+					out[count++] = CompiledExpression.DUP;
+				else {
+					out[count++] = CompiledExpression.REG;
+					out[count++] = reg[node];
+					if (lastUse[node] == pc) free[frees++] = reg[node];
+				}
+				pc = replaceEnd[pc];
+			}
+			else {
+				int length = CompiledExpression.length(code[pc]);
+				System.arraycopy(code, pc, out, count, length);
+				count += length;
+				pc += length;
+			}
+			int node = keepAt[pc] - 1;
+			if (node >= 0 && !(uses[node] == 1 && lastUse[node] == pc)) {
+				reg[node] = frees > 0 ? free[--frees] : registers++;
+				out[count++] = CompiledExpression.KEEP;
+				out[count++] = reg[node];
+			}
+		}
+
+		// registers go after the (now shallower) stack
+		int depth = 0, deepest = 0;
+		for (int pc = 0; pc < count; pc += CompiledExpression.length(out[pc])) {
+			int op = out[pc];
+			if (op == CompiledExpression.CONST || op == CompiledExpression.LOAD
+					|| op == CompiledExpression.DUP || op == CompiledExpression.REG)
+				depth++;
+			else if (op >= CompiledExpression.ADD && op <= CompiledExpression.POW
+					|| (op == CompiledExpression.CALL && MathFunctions.arity(out[pc + 1]) == 2))
+				depth--;
+			if (depth > deepest) deepest = depth;
+		}
+		for (int pc = 0; pc < count; pc += CompiledExpression.length(out[pc]))
+			if (out[pc] == CompiledExpression.KEEP || out[pc] == CompiledExpression.REG)
+				out[pc + 1] += deepest;
+		return new CompiledExpression(source, Arrays.copyOf(out, count), pool, target,
+			deepest + registers, registers, saved);
+	}
+
+	/** grow the scratch space of shared() to fit the program */
+	private void ensureShareCapacity() {
+		if (nodeKind == null || nodeKind.length < codeSize + 1) {
+			int n = Math.max(16, Integer.highestOneBit(codeSize) * 2);
+			nodeKind = new int[n];
+			nodeLeft = new int[n];
+			nodeRight = new int[n];
+			nodeEnd = new int[n];
+			nodeTable = new int[n * 2];
+			repeatStart = new int[n];
+			repeatNode = new int[n];
+			repeatOps = new int[n];
+		}
+		if (entryNode == null || entryNode.length < maxDepth) {
+			int n = Math.max(8, entryStart.length);
+			entryNode = new int[n];
+			entrySize = new int[n];
+			entryOps = new int[n];
+		}
+	}
+
+	/**
+	 *	Find the sub-expressions worth memoizing and wrap each in MEMO/SAVE.
+	 *	A sub-expression is worth it if it costs at least MEMO_MIN_COST, reads
+	 *	between 1 and MEMO_MAX_DEPS variables, and its parent reads more
+	 *	variables than it does (so the parent changing doesn't mean it
+	 *	changed). The whole expression counts too.
+	 *	@param source		the expression text
+	 *	@param pool			the constant pool
+	 *	@param target		the assigned slot or -1
+	 *	@return				the program with memos
+	 */
+	private CompiledExpression memoized(String source, double[] pool, int target) {
+		// simulate the stack: where each entry starts, its cost and variables
+		int[] start = new int[maxDepth];
+		int[] cost = new int[maxDepth];
+		int[][] deps = new int[maxDepth][];
+		int sp = 0;
+		// candidate ranges [rangeStart, rangeEnd) of the code
+		int[] rangeStart = new int[8], rangeEnd = new int[8];
+		int[][] rangeDeps = new int[8][];
+		int ranges = 0;
+		for (int pc = 0; pc < codeSize; pc += CompiledExpression.length(code[pc])) {
+			int op = code[pc];
+			if (op == CompiledExpression.CONST || op == CompiledExpression.LOAD) {
+				start[sp] = pc;
+				cost[sp] = op == CompiledExpression.LOAD ? 1 : 0;
+				deps[sp] = op == CompiledExpression.LOAD ? new int[] { code[pc + 1] } : NO_DEPS;
+				sp++;
+			}
+			else if (op == CompiledExpression.NEG)
+				cost[sp - 1]++;
+			else if (op == CompiledExpression.DUP) {	// a free copy, never memoized itself
+				start[sp] = pc;
+				cost[sp] = 0;
+				deps[sp] = deps[sp - 1];
+				sp++;
+			}
+			else if (op == CompiledExpression.CALL && MathFunctions.arity(code[pc + 1]) == 1)
+				cost[sp - 1] += CALL_COST;
+			else {
+				int[] both = union(deps[sp - 2], deps[sp - 1]);
+				for (int side = sp - 2; side < sp; side++) {
+					if (worthMemoizing(cost[side], deps[side]) && !Arrays.equals(deps[side], both)) {
+						if (ranges == rangeStart.length) {
+							rangeStart = Arrays.copyOf(rangeStart, ranges * 2);
+							rangeEnd = Arrays.copyOf(rangeEnd, ranges * 2);
+							rangeDeps = Arrays.copyOf(rangeDeps, ranges * 2);
+						}
+						rangeStart[ranges] = start[side];
+						rangeEnd[ranges] = side == sp - 2 ? start[sp - 1] : pc;
+						rangeDeps[ranges++] = deps[side];
+					}
+				}
+				sp--;
+				cost[sp - 1] += cost[sp] + (op == CompiledExpression.POW ? 8
+					: op == CompiledExpression.CALL ? CALL_COST
+					: op == CompiledExpression.DIV || op == CompiledExpression.MOD ? 2 : 1);
+				deps[sp - 1] = both;
+			}
+		}
+		if (worthMemoizing(cost[0], deps[0])) {
+			if (ranges == rangeStart.length) {
+				rangeStart = Arrays.copyOf(rangeStart, ranges + 1);
+				rangeEnd = Arrays.copyOf(rangeEnd, ranges + 1);
+				rangeDeps = Arrays.copyOf(rangeDeps, ranges + 1);
+			}
+			rangeStart[ranges] = 0;
+			rangeEnd[ranges] = codeSize;
+			rangeDeps[ranges++] = deps[0];
+		}
+
+		// MEMOs open outermost first, SAVEs close innermost first
+		Integer[] opens = new Integer[ranges], closes = new Integer[ranges];
+		for (int k = 0; k < ranges; k++) opens[k] = closes[k] = k;
+		final int[] rs = rangeStart, re = rangeEnd;
+		Arrays.sort(opens, (a, b) -> rs[a] != rs[b] ? rs[a] - rs[b] : re[b] - re[a]);
+		Arrays.sort(closes, (a, b) -> re[a] != re[b] ? re[a] - re[b] : rs[b] - rs[a]);
+
+		int[] out = new int[codeSize + ranges * 5];
+		int[] fixup = new int[ranges];	// where each MEMO's jump target goes
+		int n = 0, o = 0, c = 0;
+		for (int pc = 0; pc <= codeSize; pc += pc < codeSize ? CompiledExpression.length(code[pc]) : 1) {
+			while (c < ranges && re[closes[c]] == pc) {
+				int k = closes[c++];
+				out[n++] = CompiledExpression.SAVE;
+				out[n++] = k;
+				out[fixup[k]] = n;
+			}
+			while (o < ranges && rs[opens[o]] == pc) {
+				int k = opens[o++];
+				out[n++] = CompiledExpression.MEMO;
+				out[n++] = k;
+				fixup[k] = n++;
+			}
+			if (pc < codeSize)
+				for (int j = 0; j < CompiledExpression.length(code[pc]); j++)
+					out[n++] = code[pc + j];
+		}
+		int[][] memoDeps = Arrays.copyOf(rangeDeps, ranges);
+		return new CompiledExpression(source, Arrays.copyOf(out, n), pool, target, maxDepth,
+			memoDeps);
+	}
+
+	private static final int[] NO_DEPS = new int[0];
+
+	private static boolean worthMemoizing(int cost, int[] deps) {
+		return cost >= MEMO_MIN_COST && deps != null && deps.length > 0;
+	}
+
+	/**
+	 *	@return		the sorted union of two sorted slot lists, or null if
+	 *				either is null or the union has more than MEMO_MAX_DEPS
+	 */
+	private static int[] union(int[] a, int[] b) {
+		if (a == null || b == null) return null;
+		int[] u = new int[a.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length || j < b.length) {
+			int next;
+			if (j == b.length || (i < a.length && a[i] < b[j])) next = a[i++];
+			else if (i == a.length || b[j] < a[i]) next = b[j++];
+			else { next = a[i++]; j++; }
+			u[n++] = next;
+		}
+		if (n > MEMO_MAX_DEPS) return null;
+		return n == u.length ? u : Arrays.copyOf(u, n);
+	}
+
+	/**
+	 *	Emit the instructions for a number or (possibly signed) variable.
+	 *	@param tokens	the tokens
+	 *	@param i		index of the operand token
+	 */
+	private void emitOperand(TokenBuffer tokens, int i) {
+		int kind = tokens.kind(i);
+		int start = codeSize;
+		boolean known = false;	// value known at compile time
+		double value = 0;
+		if (kind == TokenBuffer.NUMBER) {
+			known = !exact;
+			value = tokens.value(i);
+			int index = addConstant(value);
+			if (exact) literals[index] = tokens.tokenString(i);
+			emit(CompiledExpression.CONST, index);
+		}
+		else if (kind == TokenBuffer.IDENTIFIER) {
+			int slot = resolve(tokens, i);
+			if (variables.isReadOnly(slot) && !exact) {	// e, pi never change
+				known = true;
+				value = tokens.sign(i) == '-' ? -variables.get(slot) : variables.get(slot);
+				emit(CompiledExpression.CONST, addConstant(value));
+			}
+			else {
+				emit(CompiledExpression.LOAD, slot);
+				if (tokens.sign(i) == '-')
+					emit(CompiledExpression.NEG);
+			}
+		}
+		else
+			throw new IllegalArgumentException("bad number \"" + tokens.tokenString(i) + "\"");
+		if (depth == entryStart.length) growEntries();
+		entryStart[depth] = start;
+		entryConst[depth] = known;
+		entryValue[depth] = value;
+		depth++;
+		if (depth > maxDepth) maxDepth = depth;
+	}
+
+	/**
+	 *	Add a String token to a TokenBuffer
+	 *	@param token	a token from ExprUtils.tokenizeExpression
+	 *	@param out		the buffer to add to
+	 */
+	private void addToken(String token, TokenBuffer out) {
+		char c = token.charAt(0);
+		if (token.length() == 1 && isOperatorChar(c)) {
+			out.addOperator(c, 0);
+			return;
+		}
+		char sign = (c == '-' || c == '+') ? c : 0;
+		int from = sign == 0 ? 0 : 1;
+		char first = token.charAt(from);
+		boolean number = Character.isDigit(first) || first == '.';
+		out.begin(number ? TokenBuffer.NUMBER : TokenBuffer.IDENTIFIER, sign, 0);
+		for (int j = from; j < token.length(); j++)
+			out.appendText(token.charAt(j));
+		if (!number)
+			out.finish(TokenBuffer.IDENTIFIER, 0, token.length());
+		else {
+			try {
+				out.finish(TokenBuffer.NUMBER, DoubleParser.parse(token), token.length());
+			}
+			catch (NumberFormatException e) {
+				out.finish(TokenBuffer.INVALID, Double.NaN, token.length());
+			}
+		}
+	}
+
+	/**
+	 *	Resolve the slot of an identifier token, recording it in the buffer
+	 *	@param tokens	the tokens
+	 *	@param i		index of the identifier token
+	 *	@return			its slot
+	 */
+	private int resolve(TokenBuffer tokens, int i) {
+		int slot = variables.intern(tokens.text(), tokens.textStart(i), tokens.textLength(i));
+		tokens.setSlot(i, slot);
+		return slot;
+	}
+
+	/**
+	 *	Emit the instruction for a binary operator
+	 *	@param op	the operator character
+	 */
+	private void emitOperator(char op) {
+		int opcode;
+		switch (op) {
+			case '+': opcode = CompiledExpression.ADD; break;
+			case '-': opcode = CompiledExpression.SUB; break;
+			case '*': opcode = CompiledExpression.MUL; break;
+			case '/': opcode = CompiledExpression.DIV; break;
+			case '%': opcode = CompiledExpression.MOD; break;
+			case '^': opcode = CompiledExpression.POW; break;
+			case NEGATE:
+				if (entryConst[depth - 1]) {	// fold
+					entryValue[depth - 1] = -entryValue[depth - 1];
+					codeSize = entryStart[depth - 1];
+					emit(CompiledExpression.CONST, addConstant(entryValue[depth - 1]));
+				}
+				else
+					emit(CompiledExpression.NEG);
+				return;
+			default: throw new IllegalArgumentException("unknown operator '" + op + "'");
+		}
+		if (entryConst[depth - 2] && entryConst[depth - 1]) {	// fold
+			double value = CompiledExpression.apply(opcode, entryValue[depth - 2],
+				entryValue[depth - 1]);
+			codeSize = entryStart[depth - 2];
+			emit(CompiledExpression.CONST, addConstant(value));
+			entryValue[depth - 2] = value;
+		}
+		else if (opcode == CompiledExpression.POW && entryConst[depth - 1]
+				&& reducePower(entryValue[depth - 1])) {
+			return;
+		}
+		else {
+			emit(opcode);
+			entryConst[depth - 2] = false;
+		}
+		depth--;
+	}
+
+	/**
+	 *	Replace x ^ exponent, with the exponent just emitted as a constant,
+	 *	by something cheaper than Math.pow if there is something
+	 *	@param exponent		the constant exponent
+	 *	@return				true if the power was replaced
+	 */
+	private boolean reducePower(double exponent) {
+		int op;
+		if (exponent == 2) op = CompiledExpression.DUP;
+		else if (exponent == 1) op = -1;
+		else if (exponent == 0.5) op = CompiledExpression.CALL;
+		else return false;
+		codeSize = entryStart[depth - 1];	// drop the exponent
+		depth--;
+		if (op == CompiledExpression.DUP) {
+			emit(CompiledExpression.DUP);
+			emit(CompiledExpression.MUL);
+		}
+		else if (op == CompiledExpression.CALL)
+			emit(CompiledExpression.CALL, MathFunctions.HALF_POWER);
+		entryConst[depth - 1] = false;
+		return true;
+	}
+
+	/**
+	 *	Emit a call, once its closing ")" is reached
+	 *	@param call		the function's entry from the operator stack
+	 *	@param count	the number of arguments given
+	 */
+	private void emitCall(char call, int count) {
+		int f = (call - FUNCTION) >> 1;
+		int arity = MathFunctions.arity(f);
+		if (count != arity)
+			throw new IllegalArgumentException(MathFunctions.name(f) + " takes " + arity
+				+ (arity == 1 ? " argument" : " arguments"));
+		int first = depth - arity;
+		boolean known = true;
+		for (int k = first; k < depth; k++) known &= entryConst[k];
+		if (known) {	// fold
+			double value = arity == 1 ? MathFunctions.apply(f, entryValue[first])
+				: MathFunctions.apply(f, entryValue[first], entryValue[first + 1]);
+			codeSize = entryStart[first];
+			emit(CompiledExpression.CONST, addConstant(value));
+			entryValue[first] = value;
+		}
+		else {
+			emit(CompiledExpression.CALL, f);
+			entryConst[first] = false;
+		}
+		depth = first + 1;
+		if ((call & 1) != 0) emitOperator(NEGATE);
+	}
+
+	/**
+	 *	@param op	an arithmetic operator
+	 *	@return		its precedence; higher binds tighter
+	 */
+	private int precedence(char op) {
+		switch (op) {
+			case '^': return 4;
+			case NEGATE: return 3;
+			case '*': case '/': case '%': return 2;
+			default: return 1;
+		}
+	}
+
+	private boolean isOperatorChar(char c) {
+		switch (c) {
+			case '+': case '-': case '*': case '/': case '%':
+			case '^': case '=': case '(': case ')': case ',':
+				return true;
+		}
+		return false;
+	}
+
+	private int addConstant(double value) {
+		if (constSize == constants.length) {
+			double[] bigger = new double[constSize * 2];
+			System.arraycopy(constants, 0, bigger, 0, constSize);
+			constants = bigger;
+		}
+		if (exact && (literals == null || literals.length < constants.length))
+			literals = literals == null ? new String[constants.length]
+				: Arrays.copyOf(literals, constants.length);
+		constants[constSize] = value;
+		return constSize++;
+	}
+
+	private void emit(int op) {
+		if (codeSize == code.length) growCode();
+		code[codeSize++] = op;
+	}
+
+	private void emit(int op, int operand) {
+		emit(op);
+		emit(operand);
+	}
+
+	private void growCode() {
+		int[] bigger = new int[code.length * 2];
+		System.arraycopy(code, 0, bigger, 0, codeSize);
+		code = bigger;
+	}
+
+	private void growEntries() {
+		int n = entryStart.length * 2;
+		entryStart = Arrays.copyOf(entryStart, n);
+		entryConst = Arrays.copyOf(entryConst, n);
+		entryValue = Arrays.copyOf(entryValue, n);
+	}
+
+	private void pushOp(char op) {
+		if (opsSize == ops.length) {
+			char[] bigger = new char[opsSize * 2];
+			System.arraycopy(ops, 0, bigger, 0, opsSize);
+			ops = bigger;
+		}
+		ops[opsSize++] = op;
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ *	Single-pass expression lexer. Scans a CharSequence once and writes typed
+ *	tokens into a caller-supplied TokenBuffer, parsing numbers as it goes.
+ *	It follows the same rules as ExprUtils.tokenizeExpression:
+ *	o Characters that are not letters, digits, operators, ',' or '.' (like
+ *		spaces) are skipped, and skipping them does not end the current
+ *		token. The comma separates function arguments, so it is not skipped.
+ *	o A '+' or '-' at the start, or right after '=', '+' or '-', is a unary
+ *		sign and is attached to the number or variable that follows it.
+ *	o Numbers are digits and decimal points. Names start with a letter and
+ *		go on with letters, and digits directly after the name so far, as
+ *		in atan2.
+ *	A number's value is computed as its digits are read, with DoubleParser;
+ *	the only allocation is the rare fallback to Double.parseDouble when that
+ *	can't round a long literal quickly.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class ExprLexer {
+
+	/**
+	 *	Tokenize an expression into a buffer, replacing its contents
+	 *	@param expr		the expression to tokenize
+	 *	@param out		the buffer to fill
+	 *	@return			the number of tokens
+	 */
+	public int tokenize(CharSequence expr, TokenBuffer out) {
+		out.clear();
+		int n = expr.length();
+		boolean unary = true;	// a '+' or '-' here would be a sign
+		int ind = skip(expr, 0, n);
+		while (ind < n) {
+			char c = expr.charAt(ind);
+			int from = ind;
+			ind = skip(expr, ind + 1, n);
+			char next = ind < n ? expr.charAt(ind) : 0;
+
+			if ((c == '-' || c == '+') && unary) {
+				if (Character.isDigit(next) || next == '.')
+					ind = number(expr, ind, n, c, from, out);
+				else if (Character.isLetter(next))
+					ind = identifier(expr, ind, n, c, from, out);
+				else	// a sign on its own, e.g. "-(2 + 3)"
+					out.addOperator(c, from);
+			}
+			else if (Character.isDigit(c) || c == '.')
+				ind = number(expr, from, n, (char)0, from, out);
+			else if (Character.isLetter(c))
+				ind = identifier(expr, from, n, (char)0, from, out);
+			else
+				out.addOperator(c, from);
+
+			int last = out.size() - 1;
+			unary = out.isOperator(last, '=') || out.isOperator(last, '+')
+				|| out.isOperator(last, '-');
+		}
+		return out.size();
+	}
+
+	/**
+	 *	Read a number starting at ind
+	 *	@param expr		the expression
+	 *	@param ind		index of the first digit or '.'
+	 *	@param n		length of the expression
+	 *	@param sign		unary sign character or 0
+	 *	@param from		start offset of the token (including its sign)
+	 *	@param out		the buffer to add to
+	 *	@return			the index of the next valid character after the number
+	 */
+	private int number(CharSequence expr, int ind, int n, char sign, int from,
+			TokenBuffer out) {
+		out.begin(TokenBuffer.NUMBER, sign, from);
+		long mantissa = 0;
+		int digits = 0;			// significant digits in mantissa
+		int power = 0;			// the number is mantissa * 10^power
+		int points = 0;
+		boolean truncated = false;	// nonzero digits didn't fit in mantissa
+		boolean ascii = true;	// only '0' to '9'; DoubleParser needs these
+		int end = ind;
+		while (ind < n) {
+			char c = expr.charAt(ind);
+			if (c == '.') {
+				points++;
+			}
+			else if (c >= '0' && c <= '9') {
+				if (mantissa == 0 && c == '0') {
+					if (points > 0) power--;
+				}
+				else if (digits < DoubleParser.MAX_DIGITS) {
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+					if (points > 0) power--;
+				}
+				else {
+					if (c != '0') truncated = true;
+					if (points == 0) power++;
+				}
+			}
+			else if (Character.isDigit(c)) {
+				ascii = false;
+			}
+			else
+				break;
+			out.appendText(c);
+			end = ind + 1;
+			ind = skip(expr, ind + 1, n);
+		}
+
+		int i = out.size() - 1;
+		int len = out.textLength(i);
+		if (points > 1 || len == points) {	// "1.2.3" or "."
+			out.finish(TokenBuffer.INVALID, Double.NaN, end);
+			return ind;
+		}
+		double value = ascii ? DoubleParser.toDouble(mantissa, power, truncated) : Double.NaN;
+		if (Double.isNaN(value)) {
+			try {
+				value = Double.parseDouble(new String(out.text(), out.textStart(i), len));
+			}
+			catch (NumberFormatException e) {
+				out.finish(TokenBuffer.INVALID, Double.NaN, end);
+				return ind;
+			}
+		}
+		out.finish(TokenBuffer.NUMBER, sign == '-' ? -value : value, end);
+		return ind;
+	}
+
+	/**
+	 *	Read a variable name starting at ind
+	 *	@param expr		the expression
+	 *	@param ind		index of the first letter
+	 *	@param n		length of the expression
+	 *	@param sign		unary sign character or 0
+	 *	@param from		start offset of the token (including its sign)
+	 *	@param out		the buffer to add to
+	 *	@return			the index of the next valid character after the name
+	 */
+	private int identifier(CharSequence expr, int ind, int n, char sign, int from,
+			TokenBuffer out) {
+		out.begin(TokenBuffer.IDENTIFIER, sign, from);
+		int end = ind;
+		while (ind < n && (Character.isLetter(expr.charAt(ind))
+				|| (ind == end && Character.isDigit(expr.charAt(ind))))) {
+			out.appendText(expr.charAt(ind));
+			end = ind + 1;
+			ind = skip(expr, ind + 1, n);
+		}
+		out.finish(TokenBuffer.IDENTIFIER, 0, end);
+		return ind;
+	}
+
+	/**
+	 *	Skip extraneous characters (like spaces)
+	 *	@param expr		the expression
+	 *	@param ind		where to start
+	 *	@param n		length of the expression
+	 *	@return			index of the next valid character, or n
+	 */
+	private int skip(CharSequence expr, int ind, int n) {
+		while (ind < n && !validChar(expr.charAt(ind)))
+			ind++;
+		return ind;
+	}
+
+	/**
+	 *	Test if the character is valid:
+	 *		letter, digit, arithmetic operator, comma, or decimal point
+	 *	@param c	character to check
+	 *	@return		true if character is valid; false otherwise
+	 */
+	private boolean validChar(char c) {
+		if (c < 128) {
+			switch (c) {
+				case '+': case '-': case '*': case '/': case '%':
+				case '=': case '^': case '(': case ')': case '.': case ',':
+					return true;
+			}
+		}
+		return Character.isLetterOrDigit(c);
+	}
+}
@@ -10,12 +10,11 @@ import java.util.List;
  */
 public class ExprUtils {
 	
-	private ArrayStack<String> operatorStack;	// stack for operators
-	private ArrayStack<Double> valueStack;		// stack for values
+	private ExprLexer lexer;					// single-pass tokenizer
+	private TokenBuffer buffer;					// reused by tokenizeExpression, made on first use
 	
 	public ExprUtils() {
-		operatorStack = new ArrayStack<String>();
-		valueStack = new ArrayStack<Double>();
+		lexer = new ExprLexer();
 	}
 	/*************************************************************************/
 	/****************** Expression Tokenizer methods *************************/
@@ -26,121 +25,43 @@ public class ExprUtils {
 	 *	1. The unary operator "-" or "+".
 	 *	2. An integer or decimal number. The decimal number can start with
 	 *		a digit or a decimal (".").
-	 *	3. An identifier for a variable which contains only letters.
-	 *	4. An operator, like "(", ")", "+", "-", etc.
+	 *	3. An identifier for a variable or function: letters, and digits right
+	 *		after them, like atan2.
+	 *	4. An operator, like "(", ")", "+", "-", ",", etc.
+	 *	The work is done by ExprLexer; this only turns its tokens into Strings.
 	 *	
 	 *	@param expression	the expression to tokenize
 	 *	@return				a List of tokens, each token has a length of one or greater
 	 */
 	public List<String> tokenizeExpression(String expression) {
-		// remove extraneous characters from expression
-		expression = cleanExpr(expression);
-		
-		// the expression tokens
-		List<String> result = new ArrayList<String>();
-		
-		// Keep track of last token processed
-		String lastToken = "";
-		
-		int ind = 0;	// index into String expression
-		
-		// while there are characters in the expression
-		while (ind < expression.length()) {
-			char c = expression.charAt(ind++);
-			String token = "";
-			
-			// if character is "-" or "+"
-			if (c == '-' || c == '+') {
-				// check if there is a "-" or "+" operator preceding this character.
-				// This means:
-				// 	Expression starts with unary operator like "-4".
-				// 	Expression contains two consecutive unary operators "3+-2".
-				if (lastToken.length() == 0 || lastToken.equals("=") ||
-							lastToken.equals("+") || lastToken.equals("-")) {
-					// precede number or variable with unary operator
-					token += c;
-					// If what follows is a digit, then input number
-					if (Character.isDigit(expression.charAt(ind))) {
-						// Add number to unary operator, e.g. "-" + "4.3" => "-4.3"
-						while (ind < expression.length() && 
-							( Character.isDigit(expression.charAt(ind)) ||
-								expression.charAt(ind) == '.') )
-							token += expression.charAt(ind++);
-					}
-					// else what follows is a variable, input variable
-					else {
-						while (ind < expression.length() && 
-								Character.isLetter(expression.charAt(ind)))
-							token += expression.charAt(ind++);
-					}
-					result.add(token);
-				}
-				else {
-					token = "" + c;
-					result.add(token);
-				}
-			}
-			// if character is digit or decimal, read in number
-			else if (Character.isDigit(c) || c == '.') {
-				token += c;
-				while (ind < expression.length() && 
-					( Character.isDigit(expression.charAt(ind)) ||
-						expression.charAt(ind) == '.') )
-					token += expression.charAt(ind++);
-				result.add(token);
-			}
-			// if character is a letter, read in alpha identifier
-			else if (Character.isLetter(c)) {
-				token += c;
-				while (ind < expression.length() && Character.isLetter(expression.charAt(ind)))
-					token += expression.charAt(ind++);
-				result.add(token);
-			}
-			// if character is operator or parentheses (, ), +, -, *, /, or '='
-			else if (isOperator(c)) {
-				token = "" + c;
-				result.add(token);
-			}
-			
-			// if anything else, do nothing
-			
-			lastToken = token;
-		}
-		
+		if (buffer == null) buffer = new TokenBuffer();
+		int size = tokenize(expression, buffer);
+		List<String> result = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			result.add(buffer.tokenString(i));
 		return result;
 	}
 	
 	/**
-	 *	Remove extraneous characters (like spaces)
-	 *	@param expr		the expression String
-	 *	@return			the expression with extraneous characters removed
-	 */
-	private String cleanExpr(String expr) {
-		String result = "";
-		for (int a = 0; a < expr.length(); a++)
-			if (validChar(expr.charAt(a))) result += expr.charAt(a);
-		return result;
-	}
-	
-	/**
-	 *	Test if the character is valid:
-	 *		letter, digit, arithmetic operator, or decimal point
-	 *	@param c	character to check
-	 *	@return		true if character is valid; false otherwise
+	 *	Tokenize a mathematical expression into a reusable buffer of typed
+	 *	tokens, following the same rules as tokenizeExpression but without
+	 *	building any Strings.
+	 *	@param expression	the expression to tokenize
+	 *	@param out			the buffer to fill (its previous contents are cleared)
+	 *	@return				the number of tokens
 	 */
-	private boolean validChar(char c) {
-		if (Character.isLetterOrDigit(c) || isOperator(c) || c == '.')
-			return true;
-		return false;
+	public int tokenize(CharSequence expression, TokenBuffer out) {
+		return lexer.tokenize(expression, out);
 	}
 	
 	
 	/**	Determine if character is valid arithmetic operator including parentheses
+	 *	and the comma between function arguments
 	 *	@param c	the character to check
-	 *	@return		true if the character is '+', '-', '*', '/', '^', '=','(', or ')'
+	 *	@return		true if the character is '+', '-', '*', '/', '^', '=','(', ')' or ','
 	 */
 	public boolean isOperator(char c) {
-		return isBinaryOperator(c) || c == '(' || c == ')';
+		return isBinaryOperator(c) || c == '(' || c == ')' || c == ',';
 	}
 	
 	/**	Determine if character is valid binary arithmetic operator excluding parentheses
@@ -0,0 +1,93 @@
+/**
+ *	A compiled expression for use from code, e.g.
+ *		Expression e = Calc.compile("a * x ^ 2 + b");
+ *		try (EvalContext ctx = Calc.context()) {
+ *			ctx.set("a", 2);
+ *			ctx.set("x", 3);
+ *			double y = e.evaluate(ctx);
+ *		}
+ *	Variables the context has a value for use that value; the rest use the
+ *	calculator's shared value. Evaluating never changes the shared
+ *	variables: an assignment "y = ..." stores y in the context instead, and
+ *	an assignment to a constant like pi is an error, as it is in a context.
+ *	So in reactive mode an assignment here is not kept as a formula and
+ *	recomputes nothing; evaluate it with SimpleCalc.evaluate for that.
+ *	An Expression is immutable and can be evaluated by many threads at once,
+ *	each with its own context.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public final class Expression {
+
+	private final CompiledExpression program;
+	private final SimpleCalc calc;		// owns the variables and context pool
+
+	/**
+	 *	@param program		the compiled expression
+	 *	@param calc			the calculator it was compiled by
+	 */
+	Expression(CompiledExpression program, SimpleCalc calc) {
+		this.program = program;
+		this.calc = calc;
+	}
+
+	/**
+	 *	Evaluate with a context from the calculator's pool and no values of
+	 *	its own
+	 *	@return		the value of the expression
+	 */
+	public double evaluate() {
+		try (EvalContext ctx = calc.getContexts().acquire()) {
+			return evaluate(ctx);
+		}
+	}
+
+	/**
+	 *	Evaluate using a context's values where it has them
+	 *	@param ctx		a context owned by the calling thread, made for the
+	 *					same variables as the calculator that compiled this
+	 *	@return			the value of the expression
+	 *	@throws IllegalArgumentException if the context is for other
+	 *					variables, or the expression assigns to a constant
+	 */
+	public double evaluate(EvalContext ctx) {
+		if (ctx.variables() != calc.getVariables())
+			throw new IllegalArgumentException("context is for other variables");
+		if (program.isAssignment() && calc.getVariables().isReadOnly(program.getTarget()))
+			throw new IllegalArgumentException("cannot assign to constant \"" + getTarget() + "\"");
+		long start = 0, mark = 0;
+		if (CalcMetrics.ENABLED) {
+			mark = CalcMetrics.allocationMark();
+			start = System.nanoTime();
+		}
+		double value = program.run(ctx.programStack(program.getMaxStack()), ctx.frame(program));
+		if (program.isAssignment())
+			ctx.set(program.getTarget(), value);
+		if (CalcMetrics.ENABLED) CalcMetrics.evaluated(start, mark);
+		return value;
+	}
+
+	/** @return		the names of the variables the expression reads */
+	public String[] getVariables() {
+		int[] inputs = program.inputs();
+		String[] names = new String[inputs.length];
+		for (int i = 0; i < inputs.length; i++)
+			names[i] = calc.getVariables().name(inputs[i]);
+		return names;
+	}
+
+	/** @return		the name of the assigned variable, or null if not an assignment */
+	public String getTarget() {
+		return program.isAssignment() ? calc.getVariables().name(program.getTarget()) : null;
+	}
+
+	/** @return		the expression text */
+	public String getSource() { return program.getSource(); }
+
+	/** @return		the compiled program */
+	public CompiledExpression getProgram() { return program; }
+
+	@Override
+	public String toString() { return program.toString(); }
+}
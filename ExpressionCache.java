@@ -0,0 +1,107 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ *	A bounded cache from expression text to its compiled program (P, e.g.
+ *	CompiledExpression), so that expressions seen again skip tokenizing and
+ *	compiling entirely. When the cache is full the least recently used
+ *	expression is evicted. Counts of hits, misses and evictions are kept
+ *	for tuning the size.
+ *	All methods are synchronized, so one cache can be shared by threads;
+ *	compiling happens outside the lock.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class ExpressionCache<P> {
+
+	private final LinkedHashMap<String, P> map;
+	private int capacity;
+	private long hits, misses, evictions;
+
+	/** @param capacity		the most expressions to keep (0 disables caching) */
+	public ExpressionCache(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity must not be negative");
+		this.capacity = capacity;
+		map = new LinkedHashMap<String, P>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, P> eldest) {
+				if (size() <= ExpressionCache.this.capacity) return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 *	Look up an expression, compiling and caching it on a miss
+	 *	@param expression	the expression text
+	 *	@param compiler		compiles the text on a miss
+	 *	@return				the compiled program
+	 */
+	public P get(String expression, Function<String, P> compiler) {
+		synchronized (this) {
+			P program = map.get(expression);
+			if (program != null) {
+				hits++;
+				return program;
+			}
+			misses++;
+		}
+		P program = compiler.apply(expression);
+		synchronized (this) {
+			if (capacity > 0)
+				map.put(expression, program);
+		}
+		return program;
+	}
+
+	/**
+	 *	@param expression	the expression text
+	 *	@return				its cached program, or null (not counted as a hit or miss)
+	 */
+	public synchronized P peek(String expression) {
+		return map.get(expression);
+	}
+
+	/** @param capacity		the new most expressions to keep, evicting if needed */
+	public synchronized void setCapacity(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity must not be negative");
+		this.capacity = capacity;
+		Iterator<Map.Entry<String, P>> it = map.entrySet().iterator();
+		while (map.size() > capacity) {
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/** remove every expression */
+	public synchronized void clear() { map.clear(); }
+
+	public synchronized int size() { return map.size(); }
+
+	public synchronized int getCapacity() { return capacity; }
+
+	public synchronized long getHits() { return hits; }
+
+	public synchronized long getMisses() { return misses; }
+
+	public synchronized long getEvictions() { return evictions; }
+
+	/** @return		hits divided by lookups, or 0 before any lookup */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double)hits / lookups;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("cache: %d/%d expressions, %d hits, %d misses, %d evictions",
+			map.size(), capacity, hits, misses, evictions);
+	}
+}
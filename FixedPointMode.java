@@ -0,0 +1,251 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ *	Fixed-point decimal arithmetic on longs: a value is stored as an integer
+ *	count of units of 10^-scale, so with scale 2, 12.34 is stored as 1234.
+ *	Addition, subtraction, negation and remainder are exact. Multiplication
+ *	and division are rounded to the scale, half to even, once per
+ *	operation; a power with a whole exponent is computed by repeated
+ *	multiplication, and any other power through double. A result that
+ *	doesn't fit in a long throws ArithmeticException instead of wrapping.
+ *	Ordinary operations never allocate, so this is much faster than
+ *	BigDecimal while still exact for sums of money and the like.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class FixedPointMode implements NumericMode<Long> {
+
+	private static final long EXACT_DOUBLE = 1L << 53;	// longs a double holds exactly
+
+	private final int scale;		// decimal places
+	private final long one;			// 10^scale, the stored form of 1
+
+	/** @param scale	decimal places, 0 to 18 */
+	public FixedPointMode(int scale) {
+		if (scale < 0 || scale > 18)
+			throw new IllegalArgumentException("scale must be from 0 to 18");
+		this.scale = scale;
+		long p = 1;
+		for (int i = 0; i < scale; i++) p *= 10;
+		one = p;
+	}
+
+	/** @return		the number of decimal places */
+	public int getScale() { return scale; }
+
+	public String getName() { return "fixed:" + scale; }
+
+	/** parse exactly, rounding extra decimal places half to even */
+	public Long parse(String literal) {
+		try {
+			return new BigDecimal(literal).setScale(scale, RoundingMode.HALF_EVEN)
+				.unscaledValue().longValueExact();
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad number \"" + literal + "\"");
+		}
+		catch (ArithmeticException e) {
+			throw new IllegalArgumentException("number \"" + literal + "\" is too big for "
+				+ getName());
+		}
+	}
+
+	public Long fromDouble(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			throw new ArithmeticException(value + " is not a fixed-point number");
+		return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_EVEN)
+			.unscaledValue().longValueExact();
+	}
+
+	public double toDouble(Long value) {
+		long v = value;
+		if (Math.abs(v) < EXACT_DOUBLE) return v / (double)one;	// one rounding
+		return BigDecimal.valueOf(v, scale).doubleValue();
+	}
+
+	public String format(Long value) {
+		return BigDecimal.valueOf(value, scale).toPlainString();
+	}
+
+	public Long negate(Long a) { return Math.negateExact(a); }
+
+	public Long add(Long a, Long b) { return Math.addExact(a, b); }
+
+	public Long subtract(Long a, Long b) { return Math.subtractExact(a, b); }
+
+	public Long multiply(Long a, Long b) { return multiply((long)a, (long)b); }
+
+	public Long divide(Long a, Long b) { return divide((long)a, (long)b); }
+
+	public Long remainder(Long a, Long b) { return remainder((long)a, (long)b); }
+
+	public Long power(Long a, Long b) { return power((long)a, (long)b); }
+
+	/** abs, floor and ceil are exact; other functions go through double */
+	@Override
+	public Long call(int function, Long a) { return call(function, (long)a); }
+
+	/** min and max are exact; other functions go through double */
+	@Override
+	public Long call(int function, Long a, Long b) { return call(function, (long)a, (long)b); }
+
+	/** evaluate on a primitive long stack */
+	@Override
+	public Long evaluate(CompiledExpression program, List<Long> constants,
+			IntFunction<Long> variables) {
+		int[] code = program.code();
+		long[] stack = new long[program.getMaxStack()];
+		int sp = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			int op = code[pc++];
+			switch (op) {
+				case CompiledExpression.CONST: stack[sp++] = constants.get(code[pc++]); break;
+				case CompiledExpression.LOAD: stack[sp++] = variables.apply(code[pc++]); break;
+				case CompiledExpression.NEG:
+					stack[sp - 1] = Math.negateExact(stack[sp - 1]);
+					break;
+				case CompiledExpression.ADD:
+					sp--;
+					stack[sp - 1] = Math.addExact(stack[sp - 1], stack[sp]);
+					break;
+				case CompiledExpression.SUB:
+					sp--;
+					stack[sp - 1] = Math.subtractExact(stack[sp - 1], stack[sp]);
+					break;
+				case CompiledExpression.MUL:
+					sp--;
+					stack[sp - 1] = multiply(stack[sp - 1], stack[sp]);
+					break;
+				case CompiledExpression.DIV:
+					sp--;
+					stack[sp - 1] = divide(stack[sp - 1], stack[sp]);
+					break;
+				case CompiledExpression.MOD:
+					sp--;
+					stack[sp - 1] = remainder(stack[sp - 1], stack[sp]);
+					break;
+				case CompiledExpression.POW:
+					sp--;
+					stack[sp - 1] = power(stack[sp - 1], stack[sp]);
+					break;
+				case CompiledExpression.DUP:
+					stack[sp] = stack[sp - 1];
+					sp++;
+					break;
+				case CompiledExpression.KEEP:
+					stack[code[pc++]] = stack[sp - 1];
+					break;
+				case CompiledExpression.REG:
+					stack[sp++] = stack[code[pc++]];
+					break;
+				case CompiledExpression.CALL: {
+					int f = code[pc++];
+					if (MathFunctions.arity(f) == 1)
+						stack[sp - 1] = call(f, stack[sp - 1]);
+					else {
+						sp--;
+						stack[sp - 1] = call(f, stack[sp - 1], stack[sp]);
+					}
+					break;
+				}
+				case CompiledExpression.MEMO: pc += 2; break;
+				case CompiledExpression.SAVE: pc++; break;
+				default: throw new IllegalStateException("bad opcode " + op);
+			}
+		}
+		return stack[0];
+	}
+
+	/** a * b / one, rounded half to even */
+	private long multiply(long a, long b) {
+		long high = Math.multiplyHigh(a, b);
+		long low = a * b;
+		if ((high == 0 && low >= 0) || (high == -1 && low < 0))	// fits in a long
+			return divideRounded(low, one);
+		return wide(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)),
+			BigInteger.valueOf(one));
+	}
+
+	/** a * one / b, rounded half to even */
+	private long divide(long a, long b) {
+		if (b == 0) throw new ArithmeticException("division by zero");
+		long high = Math.multiplyHigh(a, one);
+		long low = a * one;
+		if ((high == 0 && low >= 0) || (high == -1 && low < 0))
+			return divideRounded(low, b);
+		return wide(BigInteger.valueOf(a).multiply(BigInteger.valueOf(one)),
+			BigInteger.valueOf(b));
+	}
+
+	private static long remainder(long a, long b) {
+		if (b == 0) throw new ArithmeticException("division by zero");
+		return a % b;		// same scale, so exact; sign follows a, like double %
+	}
+
+	private long power(long a, long b) {
+		if (b % one == 0 && Math.abs(b / one) <= 1024) {	// whole exponent
+			long n = Math.abs(b / one);
+			long result = one;
+			long base = a;
+			while (n > 0) {
+				if ((n & 1) != 0) result = multiply(result, base);
+				n >>= 1;
+				if (n > 0) base = multiply(base, base);
+			}
+			return b < 0 ? divide(one, result) : result;
+		}
+		double value = Math.pow(toDouble(a), toDouble(b));
+		if (Double.isNaN(value) || Double.isInfinite(value))
+			throw new ArithmeticException("power is not a fixed-point number");
+		return fromDouble(value);
+	}
+
+	private long call(int function, long a) {
+		switch (function) {
+			case MathFunctions.ABS: return Math.absExact(a);
+			case MathFunctions.FLOOR: return Math.multiplyExact(Math.floorDiv(a, one), one);
+			case MathFunctions.CEIL: return Math.multiplyExact(-Math.floorDiv(Math.negateExact(a), one), one);
+			default: return fromDouble(MathFunctions.apply(function, toDouble(a)));
+		}
+	}
+
+	private long call(int function, long a, long b) {
+		switch (function) {
+			case MathFunctions.MIN: return Math.min(a, b);
+			case MathFunctions.MAX: return Math.max(a, b);
+			default: return fromDouble(MathFunctions.apply(function, toDouble(a), toDouble(b)));
+		}
+	}
+
+	/** n / d rounded half to even; d != 0 and n / d can't overflow except MIN / -1 */
+	private static long divideRounded(long n, long d) {
+		if (n == Long.MIN_VALUE && d == -1) throw new ArithmeticException("long overflow");
+		long q = n / d;
+		long r = n % d;
+		if (r == 0) return q;
+		// compare |r| with |d| / 2 without overflow
+		long absR = Math.abs(r);
+		long rest = Math.abs(d) - absR;
+		boolean negative = (n < 0) != (d < 0);
+		if (absR > rest || (absR == rest && (q & 1) != 0))
+			q += negative ? -1 : 1;
+		return q;
+	}
+
+	/** n / d for products too big for a long, rounded half to even */
+	private static long wide(BigInteger n, BigInteger d) {
+		BigDecimal q = new BigDecimal(n).divide(new BigDecimal(d), 0, RoundingMode.HALF_EVEN);
+		try {
+			return q.longValueExact();
+		}
+		catch (ArithmeticException e) {
+			throw new ArithmeticException("long overflow");
+		}
+	}
+}
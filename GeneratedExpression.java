@@ -0,0 +1,23 @@
+/**
+ *	A compiled expression turned into JVM bytecode by BytecodeGenerator.
+ *	Each method is straight-line code equivalent to running the program
+ *	with CompiledExpression.run, so the JIT can inline and optimize it like
+ *	hand-written Java.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public interface GeneratedExpression {
+
+	/**
+	 *	@param variables	the variable database the program was compiled against
+	 *	@return				the value of the expression
+	 */
+	double evaluate(SymbolTable variables);
+
+	/**
+	 *	@param values		variable values indexed by slot
+	 *	@return				the value of the expression
+	 */
+	double evaluate(double[] values);
+}
@@ -0,0 +1,55 @@
+import java.util.EmptyStackException;
+/**
+ * Stack of primitive ints backed by a growable array, so pushing and
+ * popping never boxes a value into an Integer; SimpleCalc uses it to hold
+ * operator characters
+ * 
+ * @author Rishi Salvi
+ * @since October 18, 2026
+ */
+ public class IntStack {
+	 private int[] theStack; 
+	 private int size; 
+	 
+	 public IntStack(){
+		 this(16); 
+	 }
+	 
+	 /** @param capacity		the initial number of values the stack can hold */
+	 public IntStack(int capacity){
+		 theStack = new int[Math.max(1, capacity)]; 
+	 }
+	 
+	 /** @return		true if the stack is empty; false otherwise */
+	 public boolean isEmpty() {return size == 0; }
+	 
+	 /** @return		the number of values on the stack */
+	 public int size() {return size; }
+	 
+	 /** @return		the top value on the stack */
+	 public int peek(){
+		 if (size == 0)
+			throw new EmptyStackException(); 
+		return theStack[size - 1]; 
+	}
+	
+	/** @param value		the value to put on the top of the stack */
+	public void push (int value){
+		if (size == theStack.length){
+			int[] bigger = new int[size * 2]; 
+			System.arraycopy(theStack, 0, bigger, 0, size); 
+			theStack = bigger; 
+		}
+		theStack[size++] = value; 
+	}
+	
+	/** @return			the value removed from the top of the stack */
+	public int pop(){
+		if (size == 0)
+			throw new EmptyStackException();
+		return theStack[--size]; 
+	}
+	
+	/** remove every value, keeping the storage for reuse */
+	public void clear() {size = 0; }
+ }
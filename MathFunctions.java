@@ -0,0 +1,149 @@
+/**
+ *	The built-in functions expressions can call, like sqrt(x) or
+ *	max(a, b). The compiler resolves a function's name to its number here
+ *	once, so a CALL instruction just switches on the number and calls the
+ *	java.lang.Math method directly. The JIT turns most of those (sqrt, abs,
+ *	min, max, floor, ceil, and with most CPUs exp, ln, sin and cos) into
+ *	intrinsics, and generated bytecode calls the very same methods, so the
+ *	interpreter, the batch evaluator and generated code agree exactly.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public final class MathFunctions {
+
+	// function numbers, as used by CompiledExpression.CALL
+	public static final int SQRT = 0;
+	public static final int CBRT = 1;
+	public static final int EXP = 2;
+	public static final int LN = 3;
+	public static final int LOG = 4;
+	public static final int SIN = 5;
+	public static final int COS = 6;
+	public static final int TAN = 7;
+	public static final int ASIN = 8;
+	public static final int ACOS = 9;
+	public static final int ATAN = 10;
+	public static final int SINH = 11;
+	public static final int COSH = 12;
+	public static final int TANH = 13;
+	public static final int ABS = 14;
+	public static final int FLOOR = 15;
+	public static final int CEIL = 16;
+	public static final int MIN = 17;
+	public static final int MAX = 18;
+	public static final int ATAN2 = 19;
+	public static final int HYPOT = 20;
+	/** x ^ 0.5 after strength reduction; not callable by name */
+	static final int HALF_POWER = 21;
+
+	private static final String[] NAMES = { "sqrt", "cbrt", "exp", "ln", "log",
+		"sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh",
+		"abs", "floor", "ceil", "min", "max", "atan2", "hypot", "halfpower" };
+
+	/** the static method each function calls */
+	private static final String[] METHODS = { "sqrt", "cbrt", "exp", "log", "log10",
+		"sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh",
+		"abs", "floor", "ceil", "min", "max", "atan2", "hypot", "halfPower" };
+
+	private static final int[] ARITY = { 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+		1, 1, 1, 2, 2, 2, 2, 1 };
+
+	private MathFunctions() {}
+
+	/** @return		the number of built-in functions callable by name */
+	public static int count() { return HALF_POWER; }
+
+	/**
+	 *	@param chars	characters holding a name
+	 *	@param off		where the name starts
+	 *	@param len		how long the name is
+	 *	@return			the function's number, or -1 if there is none by that name
+	 */
+	public static int find(char[] chars, int off, int len) {
+		for (int f = 0; f < HALF_POWER; f++) {
+			String name = NAMES[f];
+			if (name.length() != len) continue;
+			int i = 0;
+			while (i < len && name.charAt(i) == chars[off + i]) i++;
+			if (i == len) return f;
+		}
+		return -1;
+	}
+
+	/**
+	 *	@param name		a function name
+	 *	@return			the function's number, or -1 if there is none by that name
+	 */
+	public static int find(String name) {
+		return find(name.toCharArray(), 0, name.length());
+	}
+
+	/** @return		the name of function f, as written in expressions */
+	public static String name(int f) { return NAMES[f]; }
+
+	/** @return		how many arguments function f takes, 1 or 2 */
+	public static int arity(int f) { return ARITY[f]; }
+
+	/** @return		the internal name of the class with function f's method */
+	static String owner(int f) { return f == HALF_POWER ? "MathFunctions" : "java/lang/Math"; }
+
+	/** @return		the name of the static method function f calls */
+	static String method(int f) { return METHODS[f]; }
+
+	/**
+	 *	Exactly Math.pow(x, 0.5), which is the correctly rounded square root
+	 *	except that Math.pow gives +0 for -0 and +infinity for -infinity
+	 *	@param x	a number
+	 *	@return		x ^ 0.5
+	 */
+	public static double halfPower(double x) {
+		if (x == Double.NEGATIVE_INFINITY) return Double.POSITIVE_INFINITY;
+		return Math.sqrt(x + 0.0);		// -0 + 0 is +0
+	}
+
+	/**
+	 *	@param f	a one-argument function
+	 *	@param x	its argument
+	 *	@return		f(x)
+	 */
+	public static double apply(int f, double x) {
+		switch (f) {
+			case SQRT: return Math.sqrt(x);
+			case CBRT: return Math.cbrt(x);
+			case EXP: return Math.exp(x);
+			case LN: return Math.log(x);
+			case LOG: return Math.log10(x);
+			case SIN: return Math.sin(x);
+			case COS: return Math.cos(x);
+			case TAN: return Math.tan(x);
+			case ASIN: return Math.asin(x);
+			case ACOS: return Math.acos(x);
+			case ATAN: return Math.atan(x);
+			case SINH: return Math.sinh(x);
+			case COSH: return Math.cosh(x);
+			case TANH: return Math.tanh(x);
+			case ABS: return Math.abs(x);
+			case FLOOR: return Math.floor(x);
+			case CEIL: return Math.ceil(x);
+			case HALF_POWER: return halfPower(x);
+			default: throw new IllegalArgumentException("not a one-argument function " + f);
+		}
+	}
+
+	/**
+	 *	@param f	a two-argument function
+	 *	@param a	its first argument
+	 *	@param b	its second argument
+	 *	@return		f(a, b)
+	 */
+	public static double apply(int f, double a, double b) {
+		switch (f) {
+			case MIN: return Math.min(a, b);
+			case MAX: return Math.max(a, b);
+			case ATAN2: return Math.atan2(a, b);
+			case HYPOT: return Math.hypot(a, b);
+			default: throw new IllegalArgumentException("not a two-argument function " + f);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ *	Evaluates expressions in a NumericMode, e.g. exact money arithmetic:
+ *		NumericCalc<Long> money = new NumericCalc<Long>(new FixedPointMode(2));
+ *		money.evaluate("total = 0.10 + 0.20");		// exactly 0.30
+ *	Variables are shared with a SimpleCalc. Values assigned here are kept
+ *	exactly, and their nearest double is stored in the shared SymbolTable
+ *	too; a variable last assigned as a double (or never assigned here) is
+ *	converted from its double value. A failed operation, like division by
+ *	zero or fixed-point overflow, throws IllegalArgumentException like any
+ *	other bad expression. If the SimpleCalc is in reactive mode, a value
+ *	assigned here replaces the variable's formula, as setVariable does,
+ *	and the formulas that use it are recomputed (in double).
+ *	Evaluation is synchronized, so a NumericCalc may be shared by threads.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class NumericCalc<T> {
+
+	/** a program and its constants parsed in the mode */
+	private static final class Prepared<T> {
+		final CompiledExpression program;
+		final List<T> constants;
+
+		Prepared(CompiledExpression program, List<T> constants) {
+			this.program = program;
+			this.constants = constants;
+		}
+	}
+
+	private final NumericMode<T> mode;
+	private final SimpleCalc calc;
+	private final SymbolTable variables;
+	private final ExpressionCache<Prepared<T>> cache;
+	private Object[] exact;			// exact value of each slot assigned here
+	private long[] versions;		// the slot's version when it was assigned here
+	private final IntFunction<T> load = this::load;
+
+	/** @param mode		the kind of numbers to compute with */
+	public NumericCalc(NumericMode<T> mode) {
+		this(mode, new SimpleCalc());
+	}
+
+	/**
+	 *	@param mode		the kind of numbers to compute with
+	 *	@param calc		the calculator whose variables to share
+	 */
+	public NumericCalc(NumericMode<T> mode, SimpleCalc calc) {
+		this.mode = mode;
+		this.calc = calc;
+		variables = calc.getVariables();
+		cache = new ExpressionCache<Prepared<T>>(1024);
+		exact = new Object[0];
+		versions = new long[0];
+	}
+
+	/**
+	 *	Evaluate an expression, storing the result if it is an assignment
+	 *	@param expression	the arithmetic expression
+	 *	@return				its value
+	 *	@throws IllegalArgumentException if the expression is malformed or
+	 *					can't be computed in this mode
+	 */
+	public synchronized T evaluate(String expression) {
+		Prepared<T> prepared;
+		T value;
+		try {
+			prepared = cache.get(expression, this::prepare);	// converts the constants
+			value = mode.evaluate(prepared.program, prepared.constants, load);
+		}
+		catch (ArithmeticException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+		CompiledExpression program = prepared.program;
+		if (program.isAssignment())
+			store(program.getTarget(), value);
+		return value;
+	}
+
+	/**
+	 *	@param name		a variable name
+	 *	@param value	its new value
+	 */
+	public synchronized void set(String name, T value) {
+		store(variables.intern(name), value);
+	}
+
+	/**
+	 *	@param name		a variable name
+	 *	@return			its value in this mode (0 if it is not defined)
+	 */
+	public synchronized T get(String name) {
+		return load(variables.intern(name));
+	}
+
+	/** @return		value as text */
+	public String format(T value) { return mode.format(value); }
+
+	/** @return		the kind of numbers computed with */
+	public NumericMode<T> getMode() { return mode; }
+
+	@SuppressWarnings("unchecked")
+	private Prepared<T> prepare(String expression) {
+		CompiledExpression program = calc.compileExact(expression);
+		String[] literals = program.literals();
+		Object[] constants = new Object[literals.length];
+		for (int i = 0; i < literals.length; i++)
+			constants[i] = mode.parse(literals[i]);
+		return new Prepared<T>(program, (List<T>)Arrays.asList(constants));
+	}
+
+	@SuppressWarnings("unchecked")
+	private T load(int slot) {
+		if (slot < exact.length && exact[slot] != null
+				&& versions[slot] == variables.version(slot))	// not reassigned since
+			return (T)exact[slot];
+		try {
+			return mode.fromDouble(variables.get(slot));
+		}
+		catch (ArithmeticException e) {
+			throw new IllegalArgumentException(variables.name(slot) + ": " + e.getMessage());
+		}
+	}
+
+	private void store(int slot, T value) {
+		if (variables.isReadOnly(slot)) return;
+		if (slot >= exact.length) {
+			int n = Math.max(variables.size(), exact.length * 2);
+			exact = Arrays.copyOf(exact, n);
+			versions = Arrays.copyOf(versions, n);
+		}
+		DependencyGraph graph = calc.getFormulas();
+		if (graph != null)
+			graph.set(slot, mode.toDouble(value));	// updates what depends on it
+		else
+			variables.set(slot, mode.toDouble(value));
+		exact[slot] = value;
+		versions[slot] = variables.version(slot);
+	}
+}
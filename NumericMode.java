@@ -0,0 +1,173 @@
+import java.math.MathContext;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ *	A kind of number the calculator can compute with, and its arithmetic:
+ *	the same operators + - * / % ^ and functions over doubles (DoubleMode),
+ *	scaled longs (FixedPointMode) or BigDecimals (DecimalMode). NumericCalc evaluates
+ *	expressions with a mode; programs for it are compiled with
+ *	ExprCompiler.setExact so numbers reach the mode as their original text.
+ *	Operations that can't give a result (division by zero, overflow) throw
+ *	ArithmeticException.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public interface NumericMode<T> {
+
+	/** @return		a short name, as accepted by forName */
+	String getName();
+
+	/**
+	 *	@param literal	a number as written in an expression, e.g. "-12.50"
+	 *	@return			its value
+	 */
+	T parse(String literal);
+
+	/** @return		value converted to this mode, e.g. a variable set as a double */
+	T fromDouble(double value);
+
+	/** @return		the nearest double to value */
+	double toDouble(T value);
+
+	/** @return		value as text */
+	String format(T value);
+
+	T negate(T a);
+
+	T add(T a, T b);
+
+	T subtract(T a, T b);
+
+	T multiply(T a, T b);
+
+	T divide(T a, T b);
+
+	T remainder(T a, T b);
+
+	T power(T a, T b);
+
+	/**
+	 *	Apply a one-argument built-in function, e.g. sqrt. By default this
+	 *	goes through double, so the result is only as exact as a double;
+	 *	modes override it for the functions they can do exactly.
+	 *	@param function		a MathFunctions function number
+	 *	@param a			its argument
+	 *	@return				the result
+	 */
+	default T call(int function, T a) {
+		return fromDouble(MathFunctions.apply(function, toDouble(a)));
+	}
+
+	/**
+	 *	Apply a two-argument built-in function, e.g. max; see call(int, T)
+	 *	@param function		a MathFunctions function number
+	 *	@param a			its first argument
+	 *	@param b			its second argument
+	 *	@return				the result
+	 */
+	default T call(int function, T a, T b) {
+		return fromDouble(MathFunctions.apply(function, toDouble(a), toDouble(b)));
+	}
+
+	/**
+	 *	Evaluate a program compiled with ExprCompiler.setExact. This runs a
+	 *	plain stack machine over the operations above; a mode may override
+	 *	it with something faster.
+	 *	@param program		the program
+	 *	@param constants	its constants, parsed with this mode
+	 *	@param variables	the value of each variable slot
+	 *	@return				the value of the expression
+	 */
+	@SuppressWarnings("unchecked")
+	default T evaluate(CompiledExpression program, List<T> constants, IntFunction<T> variables) {
+		int[] code = program.code();
+		Object[] stack = new Object[program.getMaxStack()];
+		int sp = 0;
+		int pc = 0;
+		while (pc < code.length) {
+			int op = code[pc++];
+			switch (op) {
+				case CompiledExpression.CONST:
+					stack[sp++] = constants.get(code[pc++]);
+					break;
+				case CompiledExpression.LOAD:
+					stack[sp++] = variables.apply(code[pc++]);
+					break;
+				case CompiledExpression.NEG:
+					stack[sp - 1] = negate((T)stack[sp - 1]);
+					break;
+				case CompiledExpression.DUP:
+					stack[sp] = stack[sp - 1];
+					sp++;
+					break;
+				case CompiledExpression.KEEP:
+					stack[code[pc++]] = stack[sp - 1];
+					break;
+				case CompiledExpression.REG:
+					stack[sp++] = stack[code[pc++]];
+					break;
+				case CompiledExpression.CALL: {
+					int f = code[pc++];
+					if (MathFunctions.arity(f) == 1)
+						stack[sp - 1] = call(f, (T)stack[sp - 1]);
+					else {
+						sp--;
+						stack[sp - 1] = call(f, (T)stack[sp - 1], (T)stack[sp]);
+					}
+					break;
+				}
+				case CompiledExpression.MEMO:
+					pc += 2;
+					break;
+				case CompiledExpression.SAVE:
+					pc++;
+					break;
+				default: {
+					T b = (T)stack[--sp];
+					T a = (T)stack[sp - 1];
+					switch (op) {
+						case CompiledExpression.ADD: stack[sp - 1] = add(a, b); break;
+						case CompiledExpression.SUB: stack[sp - 1] = subtract(a, b); break;
+						case CompiledExpression.MUL: stack[sp - 1] = multiply(a, b); break;
+						case CompiledExpression.DIV: stack[sp - 1] = divide(a, b); break;
+						case CompiledExpression.MOD: stack[sp - 1] = remainder(a, b); break;
+						case CompiledExpression.POW: stack[sp - 1] = power(a, b); break;
+						default: throw new IllegalStateException("bad opcode " + op);
+					}
+				}
+			}
+		}
+		return (T)stack[0];
+	}
+
+	/**
+	 *	@param name		"double", "fixed" or "fixed:scale" (decimal places,
+	 *					default 4), or "decimal" or "decimal:digits"
+	 *					(significant digits, default 34)
+	 *	@return			the mode
+	 *	@throws IllegalArgumentException if the name is not a mode
+	 */
+	static NumericMode<?> forName(String name) {
+		int colon = name.indexOf(':');
+		String kind = colon < 0 ? name : name.substring(0, colon);
+		int arg;
+		try {
+			arg = colon < 0 ? -1 : Integer.parseInt(name.substring(colon + 1));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad numeric mode " + name);
+		}
+		switch (kind) {
+			case "double":
+				return new DoubleMode();
+			case "fixed":
+				return new FixedPointMode(arg < 0 ? 4 : arg);
+			case "decimal":
+				return new DecimalMode(arg < 0 ? MathContext.DECIMAL128 : new MathContext(arg));
+			default:
+				throw new IllegalArgumentException("unknown numeric mode " + name);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *	A fork/join task that evaluates a compiled expression over a range of
+ *	rows by splitting it in half until the pieces are at most chunkSize rows,
+ *	then running each piece through a BatchEvaluator borrowed from the
+ *	calculator's ContextPool. Rows are independent and every row is
+ *	evaluated exactly as the sequential BatchEvaluator would, so the
+ *	results are identical to the single-threaded path. Variables without a
+ *	column are read once, by the caller (BatchEvaluator.hold), and every
+ *	piece uses that one copy.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class ParallelBatch extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final CompiledExpression program;
+	private final double[] held;		// variables without a column, by slot
+	private final ContextPool contexts;
+	private final double[][] bySlot;	// columns by variable slot
+	private final double[] out;
+	private final int from, to;			// rows [from, to)
+	private final int chunkSize;
+
+	/**
+	 *	@param program		the compiled expression
+	 *	@param held			values of the variables without a column, from
+	 *						BatchEvaluator.hold
+	 *	@param contexts		where to borrow scratch columns from
+	 *	@param bySlot		columns indexed by slot, from BatchEvaluator.bind
+	 *	@param out			where to write the results, indexed by row
+	 *	@param from			the first row
+	 *	@param to			one past the last row
+	 *	@param chunkSize	the most rows one task evaluates without splitting
+	 */
+	public ParallelBatch(CompiledExpression program, double[] held,
+			ContextPool contexts, double[][] bySlot, double[] out, int from, int to,
+			int chunkSize) {
+		this.program = program;
+		this.held = held;
+		this.contexts = contexts;
+		this.bySlot = bySlot;
+		this.out = out;
+		this.from = from;
+		this.to = to;
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= chunkSize) {
+			EvalContext ctx = contexts.acquire();
+			try {
+				ctx.batch().evaluate(program, held, bySlot, out, from, to);
+			}
+			finally {
+				contexts.release(ctx);
+			}
+			return;
+		}
+		// split on a block boundary so each half keeps whole blocks
+		int mid = from + ((to - from) / 2 + BatchEvaluator.BLOCK - 1)
+			/ BatchEvaluator.BLOCK * BatchEvaluator.BLOCK;
+		if (mid >= to) mid = from + (to - from) / 2;
+		invokeAll(new ParallelBatch(program, held, contexts, bySlot, out, from, mid,
+				chunkSize),
+			new ParallelBatch(program, held, contexts, bySlot, out, mid, to,
+				chunkSize));
+	}
+}
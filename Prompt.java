@@ -17,9 +17,9 @@ import java.io.IOException;
 
 public class Prompt
 {
-	// BufferedReader variables
-	private static InputStreamReader streamReader = new InputStreamReader(System.in); 
-	private static BufferedReader bufReader = new BufferedReader(streamReader); 
+	// BufferedReader on System.in, made by the first prompt so that runs
+	// that never prompt (--batch, --server) don't pay for it
+	private static BufferedReader bufReader; 
 
 	/**
 	 *	Prompts user for string of characters and returns the string.
@@ -31,6 +31,8 @@ public class Prompt
 		System.out.print(ask + " -> "); 
 		String input = ""; 
 		try{
+			if (bufReader == null)
+				bufReader = new BufferedReader(new InputStreamReader(System.in)); 
 			input = bufReader.readLine(); 
 		}
 		catch (IOException e){
@@ -1,5 +1,6 @@
 import java.util.List;		// used by expression evaluator
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 /**
  *	a simple arithmetic calculator that receives an expression from the user
  *	and performs the given operations to calculate a sum
@@ -13,27 +14,103 @@ import java.util.ArrayList;
  */
 public class SimpleCalc {
 	
-	private ExprUtils utils;	// expression utilities
+	private SymbolTable variables; 	// variable database, shared by all threads
+	private ContextPool contexts;	// per-evaluation scratch state (stacks etc.)
+	private ExpressionCache<CompiledExpression> cache;	// compiled programs by text
 	
-	private ArrayStack<Double> valueStack;		// value stack
-	private ArrayStack<String> operatorStack;	// operator stack
-	private ArrayList<Identifier> variables; 	// variable database
+	private volatile BatchSettings batching;	// how evaluateBatch splits work
+	private volatile boolean memoize;	// compile with memoized sub-expressions
+	private volatile int hotThreshold = -1;	// runs before generating bytecode
+	private volatile DependencyGraph formulas;	// live assignments; null = off
+	
+	private static final char NEGATE = '~';	// sign on its own, on the operator stack
+	// a function call on the operator stack: FUNCTION + 2 * function, + 1 if negated
+	private static final int FUNCTION = 0x100;
 
 	// constructor	
 	public SimpleCalc() {
-		utils = new ExprUtils();
-		valueStack = new ArrayStack<Double>(); 
-		operatorStack = new ArrayStack<String>(); 
-		variables = new ArrayList<>(); 
-		variables.add(new Identifier("e", Math.E)); 
-		variables.add(new Identifier("pi", Math.PI)); 
+		this(SymbolTable.withConstants()); 
+	}
+	
+	/**
+	 *	A calculator working on an existing variable database. Calculators
+	 *	(and threads) sharing one SymbolTable see each other's assignments.
+	 *	@param variables	the variable database to use
+	 */
+	public SimpleCalc(SymbolTable variables) {
+		this.variables = variables; 
+		contexts = new ContextPool(variables); 
+		cache = new ExpressionCache<CompiledExpression>(1024); 
+		batching = new BatchSettings(ForkJoinPool.commonPool(), 64 * 1024); 
 	}
 	
-	public static void main(String[] args) {
-		SimpleCalc sc = new SimpleCalc();
+	/**
+	 *	With no arguments, run interactively. With
+	 *	--batch [input] [output] [threads], evaluate a file (or stdin) line by
+	 *	line without prompts; see BatchRunner. With --server [address], serve
+	 *	requests over a local socket; see CalcServer. Any of these may be
+	 *	preceded by --vars file to start with the variables saved in file
+	 *	(see VariableFile) instead of just e and pi.
+	 *	With -Dcalc.metrics=true, metrics are published over JMX, and
+	 *	-Dcalc.metrics.dump=seconds also prints them to stderr that often.
+	 */
+	public static void main(String[] args) throws java.io.IOException {
+		SimpleCalc sc;
+		if (args.length > 1 && args[0].equals("--vars")) {
+			sc = new SimpleCalc(VariableFile.load(java.nio.file.Paths.get(args[1]))); 
+			args = java.util.Arrays.copyOfRange(args, 2, args.length); 
+		}
+		else
+			sc = new SimpleCalc(); 
+		if (CalcMetrics.ENABLED) {
+			CalcMonitor.register(sc, "main"); 
+			long period = Long.getLong("calc.metrics.dump", 0); 
+			if (period > 0)
+				CalcMetrics.startDump(sc, period * 1000, System.err); 
+		}
+		if (args.length > 0 && args[0].equals("--batch")) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			if (args.length > 3) {
+				try {
+					threads = Integer.parseInt(args[3]); 
+				}
+				catch (NumberFormatException e) {
+					threads = 0; 
+				}
+				if (threads < 1)
+					usage("bad thread count \"" + args[3] + "\""); 
+			}
+			BatchRunner runner = new BatchRunner(sc, threads);
+			runner.run(args.length > 1 ? args[1] : null, args.length > 2 ? args[2] : null);
+			if (runner.getErrors() > 0)
+				System.err.println(runner.getErrors() + " of " + runner.getLines()
+					+ " lines had errors");
+			return;
+		}
+		if (args.length > 0 && args[0].equals("--server")) {
+			try {
+				CalcServer.address(args.length > 1 ? args[1] : null); 
+			}
+			catch (IllegalArgumentException e) {
+				usage(e.getMessage()); 
+			}
+			CalcServer.serve(sc, args.length > 1 ? args[1] : null); 
+			return;
+		}
 		sc.run();
 	}
 	
+	/**
+	 *	Print what was wrong with the command line and how to use it, and exit
+	 *	@param problem		the bad argument
+	 */
+	private static void usage(String problem) {
+		System.err.println(problem); 
+		System.err.println("usage: java SimpleCalc [--vars file]"
+			+ " [--batch [input|-] [output|-] [threads] | --server [port|host:port|unix:path]]"); 
+		System.exit(2); 
+	}
+	
 	public void run() {
 		System.out.println("\nWelcome to SimpleCalc!!!");
 		runCalc();
@@ -46,7 +123,6 @@ public class SimpleCalc {
 	 */
 	public void runCalc() {
 		String expression = ""; 
-		List<String> tokens = null; 
 		do{
 			expression = Prompt.getString(" "); 
 			if (expression.equals("h")){
@@ -56,247 +132,571 @@ public class SimpleCalc {
 			else if (expression.equals("l")){
 				printVariables(); 
 			}
+			else if (expression.equals("r")){
+				setReactive(!isReactive()); 
+				System.out.println("   reactive mode " + (isReactive() ? "on" : "off")); 
+			}
+			else if (isSaveCommand(expression)){
+				String file = expression.substring(5).trim(); 
+				try{
+					VariableFile.save(variables, java.nio.file.Paths.get(file)); 
+					System.out.println("   saved " + variables.size() + " variables to " + file); 
+				}
+				catch (java.io.IOException | RuntimeException e){
+					System.out.println("   error: can't save " + file + ": " + e.getMessage()); 
+				}
+			}
 			else if (!expression.equals("q")){ // if not quit{
-				tokens = utils.tokenizeExpression(expression); 
-				double answer = evaluateExpression(tokens); 
-				if (tokens.size() > 2 && tokens.get(1).equals("="))
-					System.out.printf("   %-8s= %f%n", tokens.get(0) + " ", answer);
-				else
-					System.out.println(answer); 
+				try{
+					CompiledExpression program = compile(expression); // cached
+					double answer = evaluate(program); 
+					if (program.isAssignment())
+						System.out.printf("   %-8s= %s%n", 
+							variables.name(program.getTarget()) + " ", DoubleFormat.toString(answer));
+					else
+						System.out.println(DoubleFormat.toString(answer)); 
+				}
+				catch (IllegalArgumentException e){
+					System.out.println("   error: " + e.getMessage()); 
+				}
 			}
 		} while (!expression.equals("q"));
 	}
 	
+	/**
+	 *	@return		true for "save file", as opposed to an expression using a
+	 *				variable called save, like "save / 2"
+	 */
+	private boolean isSaveCommand(String line) {
+		if (!line.startsWith("save ") || line.substring(5).trim().isEmpty()) return false;
+		try{
+			compile(line); 
+			return false; 
+		}
+		catch (IllegalArgumentException e){
+			return true; 
+		}
+	}
+	
 	/**	Print help */
 	public void printHelp() {
 		System.out.println("Help:");
-		System.out.println("  h - this message\n  q - quit\n");
+		System.out.println("  h - this message\n  l - list variables");
+		System.out.println("  save file - save variables to file, to start with --vars file");
+		System.out.println("  r - reactive mode on/off: assignments become formulas that");
+		System.out.println("      update when the variables they use change\n  q - quit\n");
 		System.out.println("Expressions can contain:");
 		System.out.println("  integers or decimal numbers");
 		System.out.println("  arithmetic operators +, -, *, /, %, ^");
 		System.out.println("  parentheses '(' and ')'");
+		System.out.println("  functions sqrt, cbrt, exp, ln, log, sin, cos, tan, asin, acos,");
+		System.out.println("    atan, sinh, cosh, tanh, abs, floor, ceil, and min(a, b),");
+		System.out.println("    max(a, b), atan2(y, x), hypot(x, y)");
 	}
 	
 	/**Print variables */
 	public void printVariables() {
 		System.out.println("Variables:");
-		for (int i = 0; i < variables.size(); i++)
-			System.out.printf("   %-8s= %3f%n", variables.get(i).getName(), 
-				variables.get(i).getValue());
+		DependencyGraph graph = formulas; 
+		for (int i = 0; i < variables.size(); i++) {
+			CompiledExpression formula = graph == null ? null : graph.formula(i); 
+			if (formula == null)
+				System.out.printf("   %-8s= %s%n", variables.name(i), 
+					DoubleFormat.toString(variables.get(i)));
+			else
+				System.out.printf("   %-8s= %s   (%s)%n", variables.name(i), 
+					DoubleFormat.toString(variables.get(i)), 
+					formula.getSource().trim());
+		}
 	}
 	
+	/** @return		the variable database */
+	public SymbolTable getVariables() { return variables; }
+	
+	/** @return		the cache of compiled expressions used by compile */
+	public ExpressionCache<CompiledExpression> getCache() { return cache; }
+	
+	/** @return		the pool of evaluation contexts this calculator uses */
+	public ContextPool getContexts() { return contexts; }
+	
 	/**
-	 *	Evaluate expression and return the value
+	 *	Evaluate expression and return the value. Safe to call from many
+	 *	threads at once.
 	 *	@param tokens	a List of String tokens making up an arithmetic expression
 	 *	@return			a double value of the evaluated expression
 	 */
 	public double evaluateExpression(List<String> tokens) {
-		double value = 0; // answer
-		for (int i = 0; i < tokens.size(); i++){ // adds all tokens to stacks
-			if (i == 0 && tokens.size() > 2 && tokens.get(1).equals("="))
-				i = 2; 
+		EvalContext ctx = contexts.acquire(); 
+		try{
+			return evaluateExpression(ctx, tokens); 
+		}
+		finally{
+			contexts.release(ctx); 
+		}
+	}
+	
+	/**
+	 *	Evaluate expression using the stacks of the given context, in one
+	 *	pass over the tokens (shunting-yard): each operator waits on the
+	 *	operator stack until one that binds less tightly arrives, and is then
+	 *	applied to the top of the value stack. Every token is pushed and
+	 *	popped at most once, so the time is linear in the number of tokens,
+	 *	no matter how deeply parentheses nest or how long a chain of ^ is,
+	 *	and the stacks never hold more than the expression's nesting needs.
+	 *	Gives the same results as compiling the expression. In reactive mode
+	 *	an assignment goes through the formulas like setVariable: the target
+	 *	gets a plain value (there is no program to keep as its formula) and
+	 *	the formulas that use it are recomputed.
+	 *	@param ctx		scratch state owned by the calling thread
+	 *	@param tokens	a List of String tokens making up an arithmetic expression
+	 *	@return			a double value of the evaluated expression
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	public double evaluateExpression(EvalContext ctx, List<String> tokens) {
+		ctx.reset(); 
+		int start = 0; // first token of the expression itself
+		if (tokens.size() > 2 && tokens.get(1).equals("=")){
+			if (!Character.isLetter(tokens.get(0).charAt(0)))
+				throw new IllegalArgumentException("cannot assign to \"" + tokens.get(0) + "\""); 
+			start = 2; 
+		}
+		if (start >= tokens.size())
+			throw new IllegalArgumentException("empty expression"); 
+		boolean expectOperand = true; // a number, variable, '(' or sign comes next
+		for (int i = start; i < tokens.size(); i++){
 			String token = tokens.get(i); 
-			if (token.length() == 1 && utils.isOperator(token.charAt(0))){ // if operator
-				/* if start of paratheses, just add to stack immediately */
-				if (token.indexOf("(") != -1)
-					operatorStack.push(token);
-				/* if end of paratheses, solve the contents of the paratheses and discard it */
-				else if (token.indexOf(")") != -1){
-					solveParantheses(); 
-					if (!operatorStack.isEmpty() && !operatorStack.peek().equals("(")
-						&& !operatorStack.peek().equals("+") && !operatorStack.peek().equals("-")){
-						//check if immediate calculations (*, /, %) can be done prior to paratheses
-						calculate(operatorStack.pop(), valueStack.pop());
-					}
+			char op = token.charAt(0); 
+			if (token.length() == 1 && ctx.utils().isOperator(op)){ // if operator
+				if (op == '('){
+					if (!expectOperand)
+						throw new IllegalArgumentException("unexpected '(' at token " + i); 
+					ctx.operatorStack.push(op); 
 				}
-				else if (token.equals("^")){ // exponents (right to left)
-					operatorStack.push(token);
-					i = solveExponents(tokens, i); 
-					if (!operatorStack.isEmpty() && !operatorStack.peek().equals("(")
-						&& !operatorStack.peek().equals("+") && !operatorStack.peek().equals("-")){
-						//check if immediate calculations (*, /, %) can be done prior to paratheses
-						calculate(operatorStack.pop(), valueStack.pop());
-					}
+				/* comma between function arguments: finish the argument before it */
+				else if (op == ',' && !expectOperand){
+					while (!ctx.operatorStack.isEmpty() && ctx.operatorStack.peek() != '(')
+						apply(ctx, ctx.operatorStack.pop()); 
+					if (ctx.operatorStack.size() < 2 || !inCall(ctx))
+						throw new IllegalArgumentException("unexpected ',' at token " + i); 
+					expectOperand = true; 
 				}
-				else{ // any other operator
-					String check = "+"; 
-					if (!operatorStack.isEmpty()) // prevent error
-						check = operatorStack.peek(); 
-					/* if token is not addition or subtraction, perform operation immediately */
-					if (hasPrecedence(check, token) && !token.equals("+") && !token.equals("-")){
-						if (tokens.get(i + 1).equals("(")) // pause if next token is paratheses
-							operatorStack.push(token);
-						else if (i + 2 < tokens.size() && tokens.get(i + 2).equals("^"))
-							operatorStack.push(token); // pause if next operator is exponent
-						else{
-							calculate(token, getNumber(tokens.get(i + 1)));
-							i++; // already added the next token in prior step
-						}
-					}
-					else{ // operator is addition/subtraction and will be added later
-						operatorStack.push(token);
-					}
+				/* end of parentheses: apply everything since the '(' and discard it */
+				else if (op == ')'){
+					if (expectOperand)
+						throw new IllegalArgumentException("unexpected ')' at token " + i); 
+					while (!ctx.operatorStack.isEmpty() && ctx.operatorStack.peek() != '(')
+						apply(ctx, ctx.operatorStack.pop()); 
+					if (ctx.operatorStack.isEmpty())
+						throw new IllegalArgumentException("unbalanced ')'"); 
+					ctx.operatorStack.pop(); 
+					if (!ctx.operatorStack.isEmpty() && ctx.operatorStack.peek() >= FUNCTION)
+						call(ctx, ctx.operatorStack.pop()); 
 				}
-			}
-			else
-				valueStack.push(getNumber(token));
-		}
-		solveEquation(); // solve the rest of the equation (only addition and subtraction)
-		value = valueStack.pop();
-		if (tokens.size() > 2 && tokens.get(1).equals("=")){
-			boolean found = false; 
-			for (int j = 0; j < variables.size(); j++){
-				if (variables.get(j).getName().equals(tokens.get(0))){
-					variables.get(j).setValue(value);
-					found = true;
+				else if (op == '=')
+					throw new IllegalArgumentException("unexpected '=' at token " + i); 
+				else if (expectOperand){ // a sign on its own, e.g. "-(2 + 3)"
+					if (op == '-')
+						ctx.operatorStack.push(NEGATE); 
+					else if (op != '+')
+						throw new IllegalArgumentException("missing operand before '" + op + "'"); 
 				}
+				else{ // binary operator: first apply the waiting ones that bind tighter
+					while (!ctx.operatorStack.isEmpty() && appliesBefore(ctx.operatorStack.peek(), op))
+						apply(ctx, ctx.operatorStack.pop()); 
+					ctx.operatorStack.push(op); 
+					expectOperand = true; 
+				}
+			}
+			/* function name: wait for its arguments, remembering where they start */
+			else if (i + 1 < tokens.size() && tokens.get(i + 1).equals("(") && isName(token)){
+				if (!expectOperand)
+					throw new IllegalArgumentException("missing operator before \"" + token + "\""); 
+				boolean negate = op == '-'; 
+				String name = negate || op == '+' ? token.substring(1) : token; 
+				int f = MathFunctions.find(name); 
+				if (f < 0)
+					throw new IllegalArgumentException("unknown function \"" + name + "\""); 
+				ctx.operatorStack.push(ctx.valueStack.size()); 
+				ctx.operatorStack.push(FUNCTION + 2 * f + (negate ? 1 : 0)); 
 			}
-			if (!found)
-				variables.add(new Identifier(tokens.get(0), value)); 
+			else{
+				if (!expectOperand)
+					throw new IllegalArgumentException("missing operator before \"" + token + "\""); 
+				ctx.valueStack.push(getNumber(token)); 
+				expectOperand = false; 
+			}
+		}
+		if (expectOperand)
+			throw new IllegalArgumentException("expression ends with an operator"); 
+		while (!ctx.operatorStack.isEmpty()){ // apply the rest, right to left
+			int op = ctx.operatorStack.pop(); 
+			if (op == '(')
+				throw new IllegalArgumentException("unbalanced '('"); 
+			apply(ctx, op); 
+		}
+		double value = ctx.valueStack.pop();
+		if (start == 2)
+			setVariable(tokens.get(0), value); // ignored for constants
+		return value;
+	}
+	
+	/**
+	 *	Compile an expression once so it can be evaluated many times without
+	 *	tokenizing or parsing it again. Programs are cached by expression
+	 *	text, so compiling the same text again is just a lookup.
+	 *	@param expression	the arithmetic expression, e.g. "a = 2 * x + 1"
+	 *	@return				the compiled program, bound to this calculator's variables
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	public CompiledExpression compile(String expression) {
+		return cache.get(expression, this::compileUncached);
+	}
+	
+	/**
+	 *	Compile an expression for evaluating with EvalContexts, which keeps
+	 *	each caller's variable values apart from the shared ones; see
+	 *	Expression
+	 *	@param expression	the arithmetic expression, e.g. "a * x ^ 2 + b"
+	 *	@return				the compiled expression
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	public Expression expression(String expression) {
+		return new Expression(compile(expression), this); 
+	}
+	
+	/**
+	 *	Compile an expression without consulting the cache
+	 *	@param expression	the arithmetic expression
+	 *	@return				the compiled program
+	 */
+	private CompiledExpression compileUncached(String expression) {
+		EvalContext ctx = contexts.acquire();
+		long start = CalcMetrics.ENABLED ? System.nanoTime() : 0;
+		try {
+			ctx.utils().tokenize(expression, ctx.tokens);
+			long tokenized = CalcMetrics.ENABLED ? System.nanoTime() : 0;
+			ctx.compiler.setMemoize(memoize);
+			ctx.compiler.setExact(false);
+			CompiledExpression program = ctx.compiler.compile(expression, ctx.tokens);
+			program.setCodeGeneration(hotThreshold);
+			if (CalcMetrics.ENABLED) CalcMetrics.compiled(start, tokenized);
+			return program;
+		}
+		catch (IllegalArgumentException e) {
+			if (CalcMetrics.ENABLED) CalcMetrics.failed();
+			throw e;
+		}
+		finally {
+			contexts.release(ctx);
+		}
+	}
+	
+	/**
+	 *	Compile an expression for a NumericMode: numbers keep their text and
+	 *	nothing is folded (see ExprCompiler.setExact). Not cached.
+	 *	@param expression	the arithmetic expression
+	 *	@return				the compiled program
+	 *	@throws IllegalArgumentException if the expression is malformed
+	 */
+	CompiledExpression compileExact(String expression) {
+		EvalContext ctx = contexts.acquire();
+		try {
+			ctx.utils().tokenize(expression, ctx.tokens);
+			ctx.compiler.setMemoize(false);
+			ctx.compiler.setExact(true);
+			return ctx.compiler.compile(expression, ctx.tokens);
+		}
+		finally {
+			contexts.release(ctx);
+		}
+	}
+	
+	/**
+	 *	Evaluate a compiled expression against the current variable values,
+	 *	storing the result if the expression is an assignment
+	 *	@param program		a program returned by compile
+	 *	@return				the value of the expression
+	 */
+	public double evaluate(CompiledExpression program) {
+		EvalContext ctx = contexts.acquire();
+		try {
+			return evaluate(program, ctx);
+		}
+		finally {
+			contexts.release(ctx);
 		}
+	}
+	
+	/**
+	 *	Evaluate a compiled expression using the scratch space of a context
+	 *	the caller already holds
+	 *	@param program		a program returned by compile
+	 *	@param ctx			scratch state owned by the calling thread
+	 *	@return				the value of the expression
+	 */
+	public double evaluate(CompiledExpression program, EvalContext ctx) {
+		long start = 0, mark = 0; 
+		if (CalcMetrics.ENABLED) {
+			mark = CalcMetrics.allocationMark(); 
+			start = System.nanoTime(); 
+		}
+		double value; 
+		DependencyGraph graph = formulas; 
+		if (graph != null && program.isAssignment())
+			value = graph.define(program); 
+		else {
+			value = program.run(ctx.programStack(program.getMaxStack()), variables);
+			if (program.isAssignment())
+				variables.set(program.getTarget(), value);
+		}
+		if (CalcMetrics.ENABLED) CalcMetrics.evaluated(start, mark); 
 		return value;
 	}
 	
+	/**
+	 *	Evaluate a compiled expression once per row of variable values, e.g.
+	 *	evaluateBatch(compile("a * x + b"), Map.of("x", xs), xs.length).
+	 *	Variables without a column use their current value for every row.
+	 *	Assignments are not stored.
+	 *	Batches of more than two chunks are split across the batch pool (see
+	 *	setBatchParallelism); the results are the same either way, since the
+	 *	variables without a column are read once for the whole batch.
+	 *	@param program		a program returned by compile
+	 *	@param columns		values for some variables, one array entry per row
+	 *	@param rows			the number of rows
+	 *	@return				the value of the expression for each row
+	 */
+	public double[] evaluateBatch(CompiledExpression program, Map<String, double[]> columns,
+			int rows) {
+		double[][] bySlot = BatchEvaluator.bind(variables, columns, rows);
+		double[] out = new double[rows];
+		if (CalcMetrics.ENABLED) CalcMetrics.batch(rows); 
+		BatchSettings settings = batching; 
+		if (settings.pool != null && rows > 2 * settings.chunkSize) {
+			double[] held = BatchEvaluator.hold(program, variables, bySlot,
+				new double[variables.size()]);
+			settings.pool.invoke(new ParallelBatch(program, held, contexts, bySlot, out,
+				0, rows, settings.chunkSize));
+			return out;
+		}
+		EvalContext ctx = contexts.acquire();
+		try {
+			ctx.batch().evaluate(program, variables, bySlot, out, 0, rows);
+			return out;
+		}
+		finally {
+			contexts.release(ctx);
+		}
+	}
+	
+	/**
+	 *	Choose how evaluateBatch splits large batches across threads
+	 *	@param pool			the fork/join pool to use, or null to always run
+	 *						batches on the calling thread
+	 *	@param chunkSize	the most rows one task evaluates (at least 1)
+	 */
+	public void setBatchParallelism(ForkJoinPool pool, int chunkSize) {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("chunk size must be positive");
+		batching = new BatchSettings(pool, chunkSize); 
+	}
+	
+	/** the batch pool and chunk size, replaced together */
+	private static final class BatchSettings {
+		final ForkJoinPool pool;	// null = never split
+		final int chunkSize;		// rows per parallel batch task
+		
+		BatchSettings(ForkJoinPool pool, int chunkSize) {
+			this.pool = pool; 
+			this.chunkSize = chunkSize; 
+		}
+	}
+	
+	/**
+	 *	Turn reactive (spreadsheet) mode on or off. While it is on, every
+	 *	assignment is kept as a formula, and assigning a variable (by an
+	 *	expression or setVariable) recomputes the formulas that depend on it;
+	 *	see DependencyGraph. Turning it off keeps the current values and
+	 *	forgets the formulas.
+	 *	@param reactive		true to turn reactive mode on
+	 */
+	public synchronized void setReactive(boolean reactive) {
+		if (!reactive)
+			formulas = null; 
+		else if (formulas == null)
+			formulas = new DependencyGraph(variables); 
+	}
+	
+	/** @return		true if assignments are kept as formulas */
+	public boolean isReactive() { return formulas != null; }
+	
+	/** @return		the formulas of reactive mode, or null if it is off */
+	public DependencyGraph getFormulas() { return formulas; }
+	
+	/**
+	 *	Give a variable a plain value, defining it if it is new. In reactive
+	 *	mode this replaces its formula and updates the formulas that use it.
+	 *	@param name		the variable's name
+	 *	@param value	the new value
+	 */
+	public void setVariable(String name, double value) {
+		DependencyGraph graph = formulas; 
+		if (graph != null)
+			graph.set(variables.intern(name), value); 
+		else
+			variables.set(name, value); 
+	}
+	
+	/**
+	 *	Turn on the bytecode backend: an expression evaluated more than
+	 *	threshold times is turned into a generated class the JIT can
+	 *	optimize like ordinary Java (see BytecodeGenerator); expressions that
+	 *	stay cold keep being interpreted. Clears the expression cache so that
+	 *	every expression picks up the new setting.
+	 *	@param threshold	evaluations to interpret before generating code,
+	 *						or -1 to never generate (the default)
+	 */
+	public void setCodeGeneration(int threshold) {
+		if (threshold < -1)
+			throw new IllegalArgumentException("threshold must be -1 or more");
+		hotThreshold = threshold; 
+		cache.clear(); 
+	}
+	
+	/**
+	 *	Choose whether compiled expressions remember the values of their
+	 *	sub-expressions and reuse them until a variable they read changes.
+	 *	Helps when the same expressions are evaluated again and again while
+	 *	only some variables change. Clears the expression cache so that
+	 *	every expression is compiled again with the new setting.
+	 *	@param memoize		true to memoize
+	 */
+	public void setMemoization(boolean memoize) {
+		this.memoize = memoize; 
+		cache.clear(); 
+	}
+	
+	/**
+	 *	@param token	a number or variable name, possibly with a sign
+	 *	@return			its value; new variables start at 0
+	 *	@throws IllegalArgumentException if the token is not a valid number
+	 */
 	public double getNumber(String token){
-		if (Character.isDigit(token.charAt(0))) // number (just added to valueStack)
-			return Double.parseDouble(token);
-		else{
-			for (int j = 0; j < variables.size(); j++){
-				if (variables.get(j).getName().equals(token)){
-					return variables.get(j).getValue();
-				}
+		char first = token.charAt(token.length() > 1 && (token.charAt(0) == '-' 
+			|| token.charAt(0) == '+') ? 1 : 0); 
+		if (Character.isDigit(first) || first == '.'){ // number
+			try{
+				return DoubleParser.parse(token);
+			}
+			catch (NumberFormatException e){
+				throw new IllegalArgumentException("bad number \"" + token + "\""); 
 			}
-			variables.add(new Identifier(token, 0.0)); 
-			return 0.0; 
 		}
+		if (first == token.charAt(0))
+			return variables.get(variables.intern(token)); 
+		double value = variables.get(variables.intern(token.substring(1))); 
+		return token.charAt(0) == '-' ? -value : value; 
+	}	
+	
+	/**
+	 *	@param token	an operand token, possibly signed
+	 *	@return			true if it is a name rather than a number
+	 */
+	private boolean isName(String token){
+		int first = token.length() > 1 && (token.charAt(0) == '-' || token.charAt(0) == '+') ? 1 : 0; 
+		return Character.isLetter(token.charAt(first)); 
 	}
 
+
 	/**
 	 * peforms operations for two given operands and their operator symbol because
-	 * the symbol is originally a String so the operation cannot be done
+	 * the symbol is an operator character so the operation cannot be done
 	 * directly 
+	 * @param ctx			the evaluation's stacks
 	 * @param operation		what the symbol for the operation is 
 	 * @param operand		the second number in the expression
 	 */
-	public void calculate(String operation, double op){
-		if (operation.equals("+"))
-			valueStack.push(valueStack.pop() + op);
-		else if (operation.equals("-"))
-			valueStack.push(valueStack.pop() - op);
-		else if (operation.equals("*"))
-			valueStack.push(valueStack.pop() * op);
-		else if (operation.equals("/"))
-			valueStack.push(valueStack.pop() / op);
-		else if (operation.equals("%")){
-			valueStack.push(valueStack.pop() % op);
+	public void calculate(EvalContext ctx, int operation, double op){
+		switch (operation){
+			case '+': ctx.valueStack.push(ctx.valueStack.pop() + op); break;
+			case '-': ctx.valueStack.push(ctx.valueStack.pop() - op); break;
+			case '*': ctx.valueStack.push(ctx.valueStack.pop() * op); break;
+			case '/': ctx.valueStack.push(ctx.valueStack.pop() / op); break;
+			case '%': ctx.valueStack.push(ctx.valueStack.pop() % op); break;
+			default: // exponent
+				ctx.valueStack.push(Math.pow(ctx.valueStack.pop(), op));
 		}
-		else // exponent (never goes here)
-			valueStack.push(Math.pow(valueStack.pop(), op));
 	}
 
 	/**
-	 * solves the contents of the parantheses (between the brackets) so they can 
-	 * be removed and treated as a single number
-	 * at this point, all of the immediate operators (*, /, %, ^) have already been
-	 * done, so just + and - remain, meaning the total can easily be computed
-	 * using LIFO
+	 * applies an operator from the operator stack to the top of the value stack
+	 * @param ctx			the evaluation's stacks
+	 * @param operation		the operator, or NEGATE for a sign on its own
 	 */
-	public void solveParantheses(){ 
-		String token = "";
-		double total = 0.0;  
-		while (!token.equals("(")){ // until reaching the opening bracket
-			double temp = valueStack.pop(); 
-			token = operatorStack.pop(); 
-			if (token.equals("-")) // make a negative number
-				temp = temp * -1; 
-			total += temp; 
-		}
-		valueStack.push(total); // final value
+	private void apply(EvalContext ctx, int operation){
+		if (operation == NEGATE)
+			ctx.valueStack.push(-ctx.valueStack.pop()); 
+		else
+			calculate(ctx, operation, ctx.valueStack.pop()); 
 	}
-
+	
 	/**
-	 * since exponents are solved right to left, they cannot be treated like any
-	 * other operator - but instead something like paratheses
-	 * the entire exponent hierachy is added to the stack until the appearance
-	 * of the first nonexponent operator or the end of the expression
-	 * the exponents are calculated using LIFO, as that means the right is calculated
-	 * first
-	 * @param tokens		the ArrayList that has every part of the expression
-	 * @param index			the index with the first occurence of the exponent operator
-	 * @return				the next index after the entire exponent has been calculated
+	 * whether the innermost open parenthesis belongs to a function call
+	 * @param ctx			the evaluation's stacks, with '(' on top
 	 */
-	public int solveExponents(List<String> tokens, int index){
-		int counter = 1; // additional indexes
-		/** until first nonexponent or end of expression */
-		while (operatorStack.peek().equals("^") && counter + index < tokens.size()){
-			String temp = tokens.get(index + counter); 
-			if (counter % 2 == 1) // if number (every other token)
-				valueStack.push(Double.parseDouble(temp));
-			else
-				operatorStack.push(temp); 
-			counter++; 
-		}
-		/** ending early indicates finding a nonexponent operator and adding it to
-		 * the stack
-		 * need to subtract 2 - 1 because you need to go one index higher to find
-		 * the nonexponent and 1 more because that loop part increments counter
-		 */
-		if (!operatorStack.peek().equals("^")){
-			operatorStack.pop(); // remove nonexponent
-			counter -= 2; 
-		}
-
-		/** while exponent operator is not done or expression is not empty */
-		while (!operatorStack.isEmpty() && operatorStack.peek().equals("^")){
-			double exp = valueStack.pop(); 
-			double base = valueStack.pop(); 
-			exp = Math.pow(base, exp);
-			operatorStack.pop(); 
-			valueStack.push(exp); // push temp value back on top
-		}
-		return counter + index;
+	private static boolean inCall(EvalContext ctx){
+		int paren = ctx.operatorStack.pop(); 
+		boolean call = !ctx.operatorStack.isEmpty() && ctx.operatorStack.peek() >= FUNCTION; 
+		ctx.operatorStack.push(paren); 
+		return call; 
 	}
-
+	
 	/**
-	 * solves the contents of the remaing expression so all of the operators can 
-	 * be removed and treated as a single number
-	 * at this point, all of the immediate operators (*, /, %, ^) have already been
-	 * done, so just + and - remain, meaning the total can easily be computed
-	 * using LIFO
+	 * calls a function whose closing parenthesis was reached, on the values
+	 * pushed since its name
+	 * @param ctx			the evaluation's stacks
+	 * @param function		the function's entry from the operator stack
 	 */
-	public void solveEquation(){
-		String token = "";
-		double total = 0.0;  
-		while (!operatorStack.isEmpty()){
-			double temp = valueStack.pop(); 
-			token = operatorStack.pop(); 
-			if (token.equals("-")) // negative
-				temp = temp * -1; 
-			total += temp; 
+	private static void call(EvalContext ctx, int function){
+		int f = (function - FUNCTION) >> 1; 
+		int arity = MathFunctions.arity(f); 
+		if (ctx.valueStack.size() - ctx.operatorStack.pop() != arity)
+			throw new IllegalArgumentException(MathFunctions.name(f) + " takes " + arity
+				+ (arity == 1 ? " argument" : " arguments")); 
+		double value; 
+		if (arity == 1)
+			value = MathFunctions.apply(f, ctx.valueStack.pop()); 
+		else{
+			double b = ctx.valueStack.pop(); 
+			value = MathFunctions.apply(f, ctx.valueStack.pop(), b); 
 		}
-		total += valueStack.pop(); // add the last value (1 more value than operator)
-		valueStack.push(total);
+		ctx.valueStack.push((function & 1) != 0 ? -value : value); 
 	}
 	
 	/**
-	 *	Precedence of operators
-	 *	@param op1	operator 1
-	 *	@param op2	operator 2
-	 *	@return		true if op2 has higher or same precedence as op1; false otherwise
-	 *	Algorithm:
-	 *		if op1 is exponent, then false
-	 *		if op2 is either left or right parenthesis, then false
-	 *		if op1 is multiplication or division or modulus and 
-	 *				op2 is addition or subtraction, then false
-	 *		otherwise true
+	 *	Whether an operator waiting on the stack is applied before a new one
+	 *	is pushed on top of it
+	 *	@param waiting	the operator on top of the stack
+	 *	@param op		the new binary operator
+	 *	@return			true if waiting binds tighter than op, or as tightly
+	 *					and op is left-associative (anything but ^)
 	 */
-	private boolean hasPrecedence(String op1, String op2) {
-		if (op1.equals("^")) return false;
-		if (op2.equals("(") || op2.equals(")")) return false;
-		if ((op1.equals("*") || op1.equals("/") || op1.equals("%")) 
-				&& (op2.equals("+") || op2.equals("-")))
-			return false;
-		return true;
+	private static boolean appliesBefore(int waiting, int op) {
+		if (waiting == '(') return false;
+		int p1 = precedence(waiting), p2 = precedence(op);
+		return p1 > p2 || (p1 == p2 && op != '^');
+	}
+	
+	/**
+	 *	@param op	an arithmetic operator
+	 *	@return		its precedence; higher binds tighter
+	 */
+	private static int precedence(int op) {
+		switch (op){
+			case '^': return 4;
+			case NEGATE: return 3;
+			case '*': case '/': case '%': return 2;
+			default: return 1;
+		}
 	}
-	 
 }
@@ -0,0 +1,118 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *	Measures how long a short command-line run takes to print its first
+ *	result: a new JVM is started for each run, given one expression on
+ *	stdin with --batch, and timed until its answer line arrives. This is
+ *	what a script calling SimpleCalc once per expression pays each time.
+ *
+ *	It times what the build packages for deployment (see pom.xml): the
+ *	runnable target/calc.jar, and the application Class Data Sharing
+ *	archive target/calc.jsa made by a training run of that jar with
+ *	-XX:ArchiveClassesAtExit. The archive holds the classes already parsed
+ *	and verified, so a run that uses it skips loading them from the jar.
+ *	Each configuration is run several times and the best and median times
+ *	are printed.
+ *
+ *	Usage:	mvn -B package
+ *			java -cp target/classes StartupBenchmark [runs] [expression]
+ *	The defaults are 10 runs of "x = 2 * (3 + 4) ^ 2". Use -Dbench.target=dir
+ *	if the build's output is somewhere other than target.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class StartupBenchmark {
+
+	private final String java;			// the java launcher of this JVM
+	private final String input;			// what each run reads from stdin
+	private final int runs;
+	private String answer;				// the first line of the last run
+
+	/**
+	 *	@param expression	the expression each run evaluates
+	 *	@param runs			runs per configuration (at least 1)
+	 */
+	public StartupBenchmark(String expression, int runs) {
+		if (runs < 1)
+			throw new IllegalArgumentException("runs must be positive");
+		java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		input = expression + "\n";
+		this.runs = runs;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		String expression = args.length > 1 ? args[1] : "x = 2 * (3 + 4) ^ 2";
+		StartupBenchmark bench = new StartupBenchmark(expression, runs);
+
+		// the archive only matches the jar by the path it was trained with
+		Path target = Paths.get(System.getProperty("bench.target", "target")).toAbsolutePath();
+		Path classes = target.resolve("classes");
+		String jar = target.resolve("calc.jar").toString();
+		Path archive = target.resolve("calc.jsa");
+		for (Path p : new Path[] { classes, Paths.get(jar), archive })
+			if (!Files.exists(p))
+				throw new IOException(p + " is missing; build it with mvn package");
+
+		System.out.println("time to first result for \"" + expression + "\", "
+			+ runs + " runs each");
+		bench.measure("class path", List.of("-cp", classes.toString(), "SimpleCalc"));
+		bench.measure("jar", List.of("-jar", jar));
+		bench.measure("jar + CDS", List.of("-XX:SharedArchiveFile=" + archive, "-jar", jar));
+		bench.measure("jar + CDS + C1 only", List.of("-XX:SharedArchiveFile=" + archive,
+			"-XX:TieredStopAtLevel=1", "-jar", jar));
+	}
+
+	/** print the best and median time of runs with some JVM options */
+	private void measure(String name, List<String> options) throws IOException, InterruptedException {
+		long[] times = new long[runs];
+		for (int i = 0; i < runs; i++)
+			times[i] = run(name, options);
+		Arrays.sort(times);
+		System.out.printf("  %-22s best %6.1f ms  median %6.1f ms  (%s)%n", name,
+			times[0] / 1e6, times[runs / 2] / 1e6, answer);
+	}
+
+	/**
+	 *	Start a JVM, give it the expression and wait for the first line,
+	 *	which is kept in answer
+	 *	@return		nanoseconds from starting the JVM to reading the line,
+	 *				not counting its shutdown
+	 */
+	private long run(String name, List<String> options) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.add("-Xshare:auto");
+		command.addAll(options);
+		command.add("--batch");
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(command)
+			.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		try (OutputStream stdin = process.getOutputStream()) {
+			stdin.write(input.getBytes(StandardCharsets.UTF_8));
+		}
+		String line;
+		long time;
+		try (BufferedReader stdout = new BufferedReader(new InputStreamReader(
+				process.getInputStream(), StandardCharsets.UTF_8))) {
+			line = stdout.readLine();
+			time = System.nanoTime() - start;	// the result is here
+			while (stdout.readLine() != null) {}
+		}
+		if (process.waitFor() != 0 || line == null)
+			throw new IOException(name + " failed with status " + process.exitValue());
+		answer = line;
+		return time;
+	}
+}
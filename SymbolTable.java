@@ -0,0 +1,332 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ *	The variable database: maps each variable name to a dense slot number
+ *	and keeps the values in primitive double arrays indexed by slot.
+ *	Names are found with an open-addressed (linear probing) hash table, so
+ *	lookup and assignment take the same time no matter how many variables
+ *	are defined. Slots are handed out in order and never change, which lets
+ *	compiled expressions refer to variables by slot.
+ *	Constants such as e and pi are read-only: assigning to them is ignored.
+ *
+ *	The table is safe to share between threads:
+ *	o Reading and assigning values never locks. Values live in fixed-size
+ *		pages that are never copied, so an assignment can't be lost when the
+ *		table grows, and each value is written with release semantics.
+ *	o Looking names up never locks. The name index is published as an
+ *		immutable-size snapshot through a volatile field.
+ *	o Only defining a new name takes a lock.
+ *	Every slot also has a version number that goes up each time its value
+ *	is assigned, so cached results can tell whether a variable has changed.
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class SymbolTable {
+
+	private static final int PAGE_BITS = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final VarHandle VALUE =
+		MethodHandles.arrayElementVarHandle(double[].class);
+	private static final VarHandle VERSION =
+		MethodHandles.arrayElementVarHandle(long[].class);
+
+	/**
+	 *	The name index. Arrays are only ever appended to past size, and a
+	 *	new Index is published for every new name, so a reader holding an
+	 *	Index never sees a slot it can't fully read.
+	 */
+	private static final class Index {
+		final String[] names;		// name of each slot
+		final boolean[] readOnly;	// true for constants
+		final int[] hashes;			// cached hash of each slot's name
+		final int[] table;			// hash table of slot + 1 (0 = empty)
+		final int size;				// number of slots in use
+
+		Index(String[] names, boolean[] readOnly, int[] hashes, int[] table, int size) {
+			this.names = names;
+			this.readOnly = readOnly;
+			this.hashes = hashes;
+			this.table = table;
+			this.size = size;
+		}
+	}
+
+	private volatile Index index;
+	private volatile double[][] pages;	// values, PAGE_SIZE per page
+	private volatile long[][] versions;	// version of each value, same layout
+
+	public SymbolTable() {
+		index = new Index(new String[16], new boolean[16], new int[16], new int[32], 0);
+		pages = new double[][] { new double[PAGE_SIZE] };
+		versions = new long[][] { new long[PAGE_SIZE] };
+	}
+
+	/**
+	 *	A table holding the given variables in slots 0 to names.length - 1,
+	 *	built in one pass instead of a name at a time; see VariableFile
+	 *	@param names	the name of each slot
+	 *	@param readOnly	true for each constant
+	 *	@param values	the value of each slot, copied in bulk
+	 *	@throws IllegalArgumentException if a name appears twice
+	 */
+	SymbolTable(String[] names, boolean[] readOnly, DoubleBuffer values) {
+		int size = names.length;
+		int capacity = Math.max(16, size);
+		int[] hashes = new int[capacity];
+		int[] table = new int[Math.max(32, Integer.highestOneBit(size + 2) << 2)];
+		Index idx = new Index(Arrays.copyOf(names, capacity),
+			Arrays.copyOf(readOnly, capacity), hashes, table, size);
+		for (int slot = 0; slot < size; slot++) {
+			int hash = hash(names[slot]);
+			if (find(idx, names[slot], hash) >= 0)
+				throw new IllegalArgumentException(names[slot] + " is defined twice");
+			hashes[slot] = hash;
+			insert(table, hash, slot);
+		}
+
+		double[][] p = new double[Math.max(1, (size + PAGE_MASK) >>> PAGE_BITS)][];
+		long[][] v = new long[p.length][];
+		for (int i = 0; i < p.length; i++) {
+			p[i] = new double[PAGE_SIZE];
+			v[i] = new long[PAGE_SIZE];
+			values.get(p[i], 0, Math.min(PAGE_SIZE, size - (i << PAGE_BITS)));
+		}
+		versions = v;
+		pages = p;
+		index = idx;	// published last, like add
+	}
+
+	/**
+	 *	@return		a table holding the standard constants e and pi
+	 */
+	public static SymbolTable withConstants() {
+		SymbolTable symbols = new SymbolTable();
+		symbols.defineConstant("e", Math.E);
+		symbols.defineConstant("pi", Math.PI);
+		return symbols;
+	}
+
+	/** @return		the number of variables (and constants) defined */
+	public int size() { return index.size; }
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@return			the name of the variable in that slot
+	 */
+	public String name(int slot) { return index.names[slot]; }
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@return			the value of the variable in that slot
+	 */
+	public double get(int slot) {
+		return (double)VALUE.getAcquire(pages[slot >>> PAGE_BITS], slot & PAGE_MASK);
+	}
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@return			true if the variable is a read-only constant
+	 */
+	public boolean isReadOnly(int slot) { return index.readOnly[slot]; }
+
+	/**
+	 *	Assign a value to a variable; constants are left unchanged
+	 *	@param slot		a variable slot
+	 *	@param value	the new value
+	 *	@return			true if the value was stored, false if read-only
+	 */
+	public boolean set(int slot, double value) {
+		if (index.readOnly[slot]) return false;
+		VALUE.setRelease(pages[slot >>> PAGE_BITS], slot & PAGE_MASK, value);
+		// bump the version after the value, so anyone who saw the old version
+		// and then read the new value still finds the version changed
+		VERSION.getAndAdd(versions[slot >>> PAGE_BITS], slot & PAGE_MASK, 1L);
+		return true;
+	}
+
+	/**
+	 *	@param slot		a variable slot
+	 *	@return			a number that changes every time the variable is assigned
+	 */
+	public long version(int slot) {
+		return (long)VERSION.getAcquire(versions[slot >>> PAGE_BITS], slot & PAGE_MASK);
+	}
+
+	/**
+	 *	@param name		a variable name
+	 *	@return			its slot, or -1 if it is not defined
+	 */
+	public int find(String name) {
+		return find(index, name, hash(name));
+	}
+
+	/**
+	 *	@param chars	characters holding a variable name
+	 *	@param off		where the name starts
+	 *	@param len		how long the name is
+	 *	@return			its slot, or -1 if it is not defined
+	 */
+	public int find(char[] chars, int off, int len) {
+		Index idx = index;
+		int hash = hash(chars, off, len);
+		int[] table = idx.table;
+		int mask = table.length - 1;
+		for (int i = hash & mask; table[i] != 0; i = (i + 1) & mask) {
+			int slot = table[i] - 1;
+			if (slot < idx.size && idx.hashes[slot] == hash
+					&& matches(idx.names[slot], chars, off, len))
+				return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 *	Find a variable, defining it with value 0 if it is new
+	 *	@param name		a variable name
+	 *	@return			its slot
+	 */
+	public int intern(String name) {
+		int slot = find(name);
+		return slot >= 0 ? slot : add(name, 0.0, false);
+	}
+
+	/**
+	 *	Find a variable, defining it with value 0 if it is new. Only creates
+	 *	a String when the name has not been seen before.
+	 *	@param chars	characters holding a variable name
+	 *	@param off		where the name starts
+	 *	@param len		how long the name is
+	 *	@return			its slot
+	 */
+	public int intern(char[] chars, int off, int len) {
+		int slot = find(chars, off, len);
+		return slot >= 0 ? slot : add(new String(chars, off, len), 0.0, false);
+	}
+
+	/**
+	 *	@param name		a variable name
+	 *	@return			its value, or 0 if it is not defined
+	 */
+	public double get(String name) {
+		int slot = find(name);
+		return slot < 0 ? 0.0 : get(slot);
+	}
+
+	/**
+	 *	Assign a value to a variable, defining it if it is new
+	 *	@param name		a variable name
+	 *	@param value	the new value
+	 *	@return			the variable's slot
+	 */
+	public int set(String name, double value) {
+		int slot = intern(name);
+		set(slot, value);
+		return slot;
+	}
+
+	/**
+	 *	Define a read-only constant
+	 *	@param name		the constant's name
+	 *	@param value	its value
+	 *	@return			its slot
+	 *	@throws IllegalArgumentException if the name is already defined
+	 */
+	public synchronized int defineConstant(String name, double value) {
+		if (find(name) >= 0)
+			throw new IllegalArgumentException(name + " is already defined");
+		return add(name, value, true);
+	}
+
+	/**
+	 *	Add a new slot. Another thread may have added the same name since the
+	 *	caller's lock-free lookup, so look again while holding the lock.
+	 */
+	private synchronized int add(String name, double value, boolean constant) {
+		Index idx = index;
+		int hash = hash(name);
+		int slot = find(idx, name, hash);
+		if (slot >= 0) return slot;
+
+		slot = idx.size;
+		String[] names = idx.names;
+		boolean[] readOnly = idx.readOnly;
+		int[] hashes = idx.hashes;
+		if (slot == names.length) {
+			names = Arrays.copyOf(names, slot * 2);
+			readOnly = Arrays.copyOf(readOnly, slot * 2);
+			hashes = Arrays.copyOf(hashes, slot * 2);
+		}
+		names[slot] = name;
+		readOnly[slot] = constant;
+		hashes[slot] = hash;
+
+		double[][] p = pages;
+		if ((slot >>> PAGE_BITS) == p.length) {
+			long[][] v = Arrays.copyOf(versions, p.length + 1);
+			v[p.length] = new long[PAGE_SIZE];
+			versions = v;
+			p = Arrays.copyOf(p, p.length + 1);
+			p[p.length - 1] = new double[PAGE_SIZE];
+			pages = p;
+		}
+		VALUE.setRelease(p[slot >>> PAGE_BITS], slot & PAGE_MASK, value);
+
+		int[] table = idx.table;
+		if ((slot + 2) * 2 > table.length) {
+			table = new int[table.length * 2];
+			for (int s = 0; s < slot; s++)
+				insert(table, hashes[s], s);
+		}
+		insert(table, hash, slot);
+		index = new Index(names, readOnly, hashes, table, slot + 1);
+		return slot;
+	}
+
+	private static int find(Index idx, String name, int hash) {
+		int[] table = idx.table;
+		int mask = table.length - 1;
+		for (int i = hash & mask; table[i] != 0; i = (i + 1) & mask) {
+			int slot = table[i] - 1;
+			if (slot < idx.size && idx.hashes[slot] == hash && idx.names[slot].equals(name))
+				return slot;
+		}
+		return -1;
+	}
+
+	private static void insert(int[] table, int hash, int slot) {
+		int mask = table.length - 1;
+		int i = hash & mask;
+		while (table[i] != 0)
+			i = (i + 1) & mask;
+		table[i] = slot + 1;
+	}
+
+	private static boolean matches(String name, char[] chars, int off, int len) {
+		if (name.length() != len) return false;
+		for (int i = 0; i < len; i++)
+			if (name.charAt(i) != chars[off + i]) return false;
+		return true;
+	}
+
+	/** String.hashCode spread so that similar names land far apart */
+	private static int hash(String name) {
+		return spread(name.hashCode());
+	}
+
+	private static int hash(char[] chars, int off, int len) {
+		int h = 0;
+		for (int i = 0; i < len; i++)
+			h = 31 * h + chars[off + i];
+		return spread(h);
+	}
+
+	private static int spread(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
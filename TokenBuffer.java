@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ *	A reusable buffer of typed expression tokens filled by ExprLexer.
+ *	Tokens are stored column-wise in parallel primitive arrays that only grow,
+ *	so lexing into the same buffer again allocates nothing once it is warm.
+ *	For every token the buffer records:
+ *	o kind		NUMBER, IDENTIFIER, OPERATOR or INVALID (a malformed number)
+ *	o value		the parsed number (NUMBER only)
+ *	o operator	the operator character (OPERATOR only)
+ *	o sign		a unary '+' or '-' attached to a NUMBER or IDENTIFIER, or 0
+ *	o slot		the variable slot of an IDENTIFIER once resolved, or -1
+ *	o start/end	offsets of the token in the source text
+ *	o text		the token's characters with spaces removed and without
+ *				its sign, kept in one shared char pool
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class TokenBuffer {
+
+	// token kinds
+	public static final int NUMBER = 0;
+	public static final int IDENTIFIER = 1;
+	public static final int OPERATOR = 2;
+	public static final int INVALID = 3;
+
+	private int size;
+	private int[] kind;
+	private double[] value;
+	private char[] operator;
+	private char[] sign;
+	private int[] slot;
+	private int[] start, end;
+	private int[] textStart, textLength;
+
+	private char[] text;	// shared pool of token characters
+	private int textSize;
+
+	public TokenBuffer() {
+		this(32);
+	}
+
+	/** @param capacity		the initial number of tokens the buffer can hold */
+	public TokenBuffer(int capacity) {
+		capacity = Math.max(1, capacity);
+		kind = new int[capacity];
+		value = new double[capacity];
+		operator = new char[capacity];
+		sign = new char[capacity];
+		slot = new int[capacity];
+		start = new int[capacity];
+		end = new int[capacity];
+		textStart = new int[capacity];
+		textLength = new int[capacity];
+		text = new char[capacity * 4];
+	}
+
+	/** remove all tokens, keeping the storage for reuse */
+	public void clear() {
+		size = 0;
+		textSize = 0;
+	}
+
+	/** @return		the number of tokens in the buffer */
+	public int size() { return size; }
+
+	public int kind(int i) { return kind[i]; }
+
+	public double value(int i) { return value[i]; }
+
+	public char operator(int i) { return operator[i]; }
+
+	public char sign(int i) { return sign[i]; }
+
+	public int slot(int i) { return slot[i]; }
+
+	public void setSlot(int i, int s) { slot[i] = s; }
+
+	public int start(int i) { return start[i]; }
+
+	public int end(int i) { return end[i]; }
+
+	/** @return		the shared character pool; see textStart and textLength */
+	public char[] text() { return text; }
+
+	public int textStart(int i) { return textStart[i]; }
+
+	public int textLength(int i) { return textLength[i]; }
+
+	/**
+	 *	@param i	token index
+	 *	@return		true if token i is the operator character c
+	 */
+	public boolean isOperator(int i, char c) {
+		return kind[i] == OPERATOR && operator[i] == c;
+	}
+
+	/**
+	 *	Build the String form of a token, as ExprUtils.tokenizeExpression
+	 *	returns it (sign, then text).
+	 *	@param i	token index
+	 *	@return		the token as a String
+	 */
+	public String tokenString(int i) {
+		if (kind[i] == OPERATOR)
+			return String.valueOf(operator[i]);
+		if (sign[i] == 0)
+			return new String(text, textStart[i], textLength[i]);
+		return new StringBuilder(textLength[i] + 1).append(sign[i])
+			.append(text, textStart[i], textLength[i]).toString();
+	}
+
+	/**
+	 *	Append an operator token
+	 *	@param op		the operator character
+	 *	@param from		offset of the operator in the source
+	 *	@return			the index of the new token
+	 */
+	int addOperator(char op, int from) {
+		int i = add(OPERATOR, from);
+		operator[i] = op;
+		end[i] = from + 1;
+		textLength[i] = 0;
+		return i;
+	}
+
+	/**
+	 *	Start a NUMBER, IDENTIFIER or INVALID token whose characters are then
+	 *	added with appendText
+	 *	@param k		the token kind
+	 *	@param s		a unary sign character or 0
+	 *	@param from		offset of the token in the source
+	 *	@return			the index of the new token
+	 */
+	int begin(int k, char s, int from) {
+		int i = add(k, from);
+		sign[i] = s;
+		return i;
+	}
+
+	/** add a character to the text of the last token */
+	void appendText(char c) {
+		if (textSize == text.length) {
+			char[] bigger = new char[text.length * 2];
+			System.arraycopy(text, 0, bigger, 0, textSize);
+			text = bigger;
+		}
+		text[textSize++] = c;
+		textLength[size - 1]++;
+	}
+
+	/** finish the last token */
+	void finish(int k, double v, int to) {
+		int i = size - 1;
+		kind[i] = k;
+		value[i] = v;
+		end[i] = to;
+	}
+
+	private int add(int k, int from) {
+		if (size == kind.length) grow();
+		int i = size++;
+		kind[i] = k;
+		value[i] = 0;
+		operator[i] = 0;
+		sign[i] = 0;
+		slot[i] = -1;
+		start[i] = from;
+		end[i] = from;
+		textStart[i] = textSize;
+		textLength[i] = 0;
+		return i;
+	}
+
+	private void grow() {
+		int n = kind.length * 2;
+		kind = Arrays.copyOf(kind, n);
+		value = Arrays.copyOf(value, n);
+		operator = Arrays.copyOf(operator, n);
+		sign = Arrays.copyOf(sign, n);
+		slot = Arrays.copyOf(slot, n);
+		start = Arrays.copyOf(start, n);
+		end = Arrays.copyOf(end, n);
+		textStart = Arrays.copyOf(textStart, n);
+		textLength = Arrays.copyOf(textLength, n);
+	}
+}
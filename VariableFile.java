@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *	Saves a SymbolTable to a compact binary file and loads it back, so a
+ *	large environment starts up without re-evaluating assignment scripts.
+ *	The file is read through a read-only memory map: the values are copied
+ *	into the table in bulk and the names are read as raw chars, with nothing
+ *	to parse, and processes loading the same file share its pages in the
+ *	operating system's cache.
+ *
+ *	The layout, little-endian:
+ *		int		MAGIC
+ *		int		number of variables, n
+ *		long	reserved, 0
+ *		double	n values, in slot order
+ *		byte	n flags, 1 for a read-only constant
+ *		n names, each an int length then that many UTF-16 chars
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+public class VariableFile {
+
+	private static final int MAGIC = 0x31564353;		// "SCV1" little-endian
+	private static final int HEADER = 16;				// bytes before the values
+
+	private VariableFile() {}
+
+	/**
+	 *	Write every variable and constant in a table. The file is written
+	 *	next to path and then renamed over it, so a process that has the old
+	 *	file mapped keeps seeing a whole file. Values are read without
+	 *	locking, so saving while other threads assign may mix old and new
+	 *	values of different variables.
+	 *	@param variables	the table to save
+	 *	@param path			the file to write
+	 */
+	public static void save(SymbolTable variables, Path path) throws IOException {
+		int n = variables.size();
+		String[] names = new String[n];
+		long size = HEADER + 9L * n;
+		for (int i = 0; i < n; i++) {
+			names[i] = variables.name(i);
+			size += 4 + 2L * names[i].length();
+		}
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("too many variables to save");
+
+		ByteBuffer buffer = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC).putInt(n).putLong(0);
+		for (int i = 0; i < n; i++)
+			buffer.putDouble(variables.get(i));
+		for (int i = 0; i < n; i++)
+			buffer.put((byte)(variables.isReadOnly(i) ? 1 : 0));
+		for (int i = 0; i < n; i++) {
+			buffer.putInt(names[i].length());
+			for (int c = 0; c < names[i].length(); c++)
+				buffer.putChar(names[i].charAt(c));
+		}
+		buffer.flip();
+
+		Path dir = path.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining())
+					out.write(buffer);
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 *	Read a saved table. Constants stay read-only; versions start over.
+	 *	@param path		the file to read
+	 *	@return			a new table holding the file's variables
+	 *	@throws IOException if the file can't be read or is not a variable file
+	 */
+	public static SymbolTable load(Path path) throws IOException {
+		MappedByteBuffer map;
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+			map = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());	// outlives the channel
+		}
+		ByteBuffer buffer = map.order(ByteOrder.LITTLE_ENDIAN);
+		try {
+			if (buffer.getInt() != MAGIC)
+				throw new IOException(path + " is not a variable file");
+			int n = buffer.getInt();
+			if (n < 0 || HEADER + 9L * n > buffer.limit())
+				throw new IOException(path + " is truncated");
+			int flags = HEADER + 8 * n;
+			boolean[] readOnly = new boolean[n];
+			for (int i = 0; i < n; i++)
+				readOnly[i] = buffer.get(flags + i) != 0;
+
+			String[] names = new String[n];
+			buffer.position(flags + n);
+			char[] chars = new char[64];
+			for (int i = 0; i < n; i++) {
+				int length = buffer.getInt();
+				if (length < 0 || length > buffer.remaining() / 2)
+					throw new IOException(path + " is truncated");
+				if (length > chars.length) chars = new char[Math.max(length, chars.length * 2)];
+				CharBuffer text = buffer.asCharBuffer();	// shares the map, same byte order
+				text.get(chars, 0, length);
+				buffer.position(buffer.position() + 2 * length);
+				names[i] = new String(chars, 0, length);
+			}
+
+			buffer.position(HEADER);
+			return new SymbolTable(names, readOnly, buffer.asDoubleBuffer());
+		}
+		catch (BufferUnderflowException e) {
+			throw new IOException(path + " is truncated");
+		}
+		catch (IllegalArgumentException e) {		// a name defined twice
+			throw new IOException(path + " is not a valid variable file: " + e.getMessage());
+		}
+	}
+}
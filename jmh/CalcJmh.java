@@ -0,0 +1,83 @@
+package jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *	The CalcBenchmark cases under JMH, one value of name per case. JMH
+ *	forks a JVM per case, and -prof gc gives the bytes allocated per
+ *	operation.
+ *
+ *	The calculator's classes are in the unnamed package, which code in a
+ *	package (as JMH requires of benchmarks) can't name. So setup fetches
+ *	the case by reflection from CalcBenchmark.lookup, once, and what is
+ *	timed is the same operation CalcBenchmark's own harness times.
+ *
+ *	Usage:	mvn -B -P jmh package
+ *			java -jar target/benchmarks.jar [-p name=case,...] [-prof gc]
+ *
+ *	@author	Rishi Salvi
+ *	@since	October 18, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalcJmh {
+
+	@Param({ "tokenize.short.list", "tokenize.short.buffer", "tokenize.long.list",
+		"tokenize.long.buffer",
+		"number.parse.fast", "number.parse.jdk", "number.format.shortest",
+		"number.format.jdk",
+		"evaluate.precedence.tokens", "evaluate.precedence.compiled",
+		"evaluate.precedence.generated",
+		"evaluate.parentheses.tokens", "evaluate.parentheses.compiled",
+		"evaluate.parentheses.generated",
+		"evaluate.powchain.tokens", "evaluate.powchain.compiled",
+		"evaluate.powchain.generated",
+		"evaluate.variables.tokens", "evaluate.variables.compiled",
+		"evaluate.variables.generated",
+		"evaluate.physics.tokens", "evaluate.physics.compiled",
+		"evaluate.physics.generated",
+		"evaluate.shared.tokens", "evaluate.shared.compiled", "evaluate.shared.generated",
+		"api.expression.pooled",
+		"stress.tokens.100k.tokens", "stress.tokens.100k.compile",
+		"stress.tokens.100k.compiled",
+		"stress.tokens.1m.tokens", "stress.tokens.1m.compile", "stress.tokens.1m.compiled",
+		"stress.nesting.10k.tokens", "stress.nesting.10k.compile",
+		"stress.nesting.10k.compiled",
+		"stress.powchain.100k.tokens", "stress.powchain.100k.compile",
+		"stress.powchain.100k.compiled",
+		"numeric.double", "numeric.fixed", "numeric.decimal",
+		"compile.cached", "compile.uncached",
+		"symbols.find.5000", "symbols.get.5000",
+		"startup.script.5000", "startup.load.5000" })
+	public String name;
+
+	private DoubleSupplier op;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		op = (DoubleSupplier)Class.forName("CalcBenchmark").getMethod("lookup", String.class)
+			.invoke(null, name);
+	}
+
+	@Benchmark
+	public double run() {
+		return op.getAsDouble();
+	}
+}